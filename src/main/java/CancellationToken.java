@@ -0,0 +1,147 @@
+package main.java;
+
+import main.java.exceptions.OperationCancelledException;
+
+import java.time.Duration;
+
+/**
+ * Token that allows long-running operations (diff, parsing, serialization) to be stopped
+ * either explicitly via {@link #cancel()} (e.g. from another thread) or when the time budget runs out.
+ * Operations check the token when they start and then only once per {@link #CHECK_INTERVAL} processed nodes,
+ * so the inner loops stay free of volatile reads and clock calls. The optional progress listener is notified on every check
+ * and once more when operation has finished.
+ */
+public class CancellationToken {
+    public static final int CHECK_INTERVAL = 1 << 12;
+
+    /**
+     * Listener of the operation progress
+     */
+    public interface ProgressListener {
+        /**
+         * @param done number of nodes (or edges) processed so far
+         * @param total total number of nodes (or edges) to be processed, -1 if unknown (e.g. while parsing)
+         * */
+        void onProgress(long done, long total);
+    }
+
+    private final long deadline; // System.nanoTime() based
+    private final boolean hasDeadline;
+    private final ProgressListener listener;
+    private volatile boolean cancelled;
+
+    /**
+     * Creates a token without time budget, that can only be cancelled explicitly
+     * */
+    public CancellationToken() {
+        this(null, null);
+    }
+
+    /**
+     * @param budget time budget of the operation (starting now), null for unlimited
+     * */
+    public CancellationToken(Duration budget) {
+        this(budget, null);
+    }
+
+    /**
+     * @param budget time budget of the operation (starting now), null for unlimited
+     * @param listener listener to be notified about progress, null if not needed
+     * */
+    public CancellationToken(Duration budget, ProgressListener listener) {
+        this.hasDeadline = budget != null;
+        this.deadline = hasDeadline ? System.nanoTime() + budget.toNanos() : 0;
+        this.listener = listener;
+    }
+
+    /**
+     * Requests cancellation, operations using the token stop on their next check
+     * */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true if token was cancelled or its time budget ran out
+     * */
+    public boolean isCancelled() {
+        return cancelled || (hasDeadline && System.nanoTime() - deadline >= 0);
+    }
+
+    /**
+     * Reports progress and stops the operation if it should not continue
+     * @param done number of nodes (or edges) processed so far
+     * @param total total number of nodes (or edges) to be processed, -1 if unknown
+     * @throws OperationCancelledException if token was cancelled or its time budget ran out
+     * */
+    public void check(long done, long total) {
+        if (listener != null) {
+            listener.onProgress(done, total);
+        }
+        if (cancelled) {
+            throw new OperationCancelledException("Operation was cancelled!", done, total);
+        } else if (hasDeadline && System.nanoTime() - deadline >= 0) {
+            throw new OperationCancelledException("Operation ran out of its time budget!", done, total);
+        }
+    }
+
+    /**
+     * Counter of processed nodes that consults the token once per {@link #CHECK_INTERVAL} steps
+     * Token may be null, then nothing is ever checked.
+     */
+    static final class Progress {
+        private final CancellationToken token;
+        private final long total;
+        private long done;
+
+        Progress(CancellationToken token, long total) {
+            this.token = token;
+            this.total = total;
+        }
+
+        /**
+         * Checks the token before the operation starts, so an already cancelled operation does no work
+         * @throws OperationCancelledException if operation should not start
+         * */
+        void start() {
+            if (token != null) {
+                token.check(done, total);
+            }
+        }
+
+        /**
+         * Marks one more node (or edge) as processed
+         * @throws OperationCancelledException if operation should stop
+         * */
+        void step() {
+            if ((++done & (CHECK_INTERVAL - 1)) == 0 && token != null) {
+                token.check(done, total);
+            }
+        }
+
+        /**
+         * Marks count more nodes (or edges) as processed at once
+         * @throws OperationCancelledException if operation should stop
+         * */
+        void step(long count) {
+            long before = done;
+            done += count;
+            if (token != null && before / CHECK_INTERVAL != done / CHECK_INTERVAL) {
+                token.check(done, total);
+            }
+        }
+
+        /**
+         * Reports final progress to the listener
+         * */
+        void finish() {
+            if (token != null && token.listener != null) {
+                token.listener.onProgress(done, total);
+            }
+        }
+
+        long getDone() {
+            return done;
+        }
+    }
+}
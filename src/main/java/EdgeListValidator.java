@@ -0,0 +1,157 @@
+package main.java;
+
+import main.java.exceptions.NodeAlreadyExistsException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Validation of a tree given as a list of (parent, child) edges in primitive arrays.
+ * Runs in near-linear time and reports all the problems at once:
+ * nodes with several parents (in-degree counting), cycles of any length (union-find over the edges),
+ * and missing or multiple roots (i.e. tree is not connected).
+ * Repeated identical edges are allowed and ignored.
+ */
+public class EdgeListValidator {
+    private static final int MAX_REPORTED_PROBLEMS = 20;
+
+    private final List<String> problems = new ArrayList<>();
+    private int problemCount;
+
+    private EdgeListValidator() {
+    }
+
+    /**
+     * Validates edges and returns the root of the tree they describe
+     * @param parents parent indexes of the edges
+     * @param children child indexes of the edges
+     * @param count number of edges (prefix of the arrays)
+     * @return index of the root node
+     * @throws IllegalArgumentException if edges do not describe a tree, i.e.:
+     * tree had cycles, had no root or was not connected (multiple different root nodes),
+     * message lists all the problems (including nodes with several parents)
+     * @throws NodeAlreadyExistsException if the only problem is that some nodes have several parents
+     * */
+    public static int validate(int[] parents, int[] children, int count) {
+        return new EdgeListValidator().run(parents, children, count);
+    }
+
+    private void report(String problem) {
+        if (problemCount++ < MAX_REPORTED_PROBLEMS) {
+            problems.add(problem);
+        }
+    }
+
+    private String getMessage() {
+        StringBuilder sb = new StringBuilder("Incorrect tree structure provided!");
+        for (String problem : problems) {
+            sb.append("\n").append(problem);
+        }
+        if (problemCount > problems.size()) {
+            sb.append("\n... and ").append(problemCount - problems.size()).append(" more problems");
+        }
+        return sb.toString();
+    }
+
+    private int run(int[] parents, int[] children, int count) {
+        // dense numbering of the nodes
+        IntIntHashMap ids = new IntIntHashMap(count + 1);
+        int[] parentIds = new int[count], childIds = new int[count];
+        for (int i = 0; i < count; i++) {
+            parentIds[i] = getId(ids, parents[i]);
+            childIds[i] = getId(ids, children[i]);
+        }
+        int nodeCount = ids.size();
+        int[] indexes = new int[nodeCount];
+        for (int i = 0; i < count; i++) {
+            indexes[parentIds[i]] = parents[i];
+            indexes[childIds[i]] = children[i];
+        }
+
+        // in-degree counting: first parent of every node is its tree edge, other parents are reported
+        int[] parentOf = new int[nodeCount];
+        Arrays.fill(parentOf, -1);
+        boolean[] treeEdge = new boolean[count];
+        int duplicateParents = 0;
+        for (int i = 0; i < count; i++) {
+            int parent = parentIds[i], child = childIds[i];
+            if (parentOf[child] == -1) {
+                parentOf[child] = parent;
+                treeEdge[i] = true;
+            } else if (parentOf[child] != parent) {
+                duplicateParents++;
+                report("Node " + children[i] + " has multiple parents: " + indexes[parentOf[child]] + ", " + parents[i]);
+            }
+        }
+
+        // union-find over tree edges: with at most one parent per node, a closed undirected cycle is a directed one
+        int[] representatives = new int[nodeCount];
+        for (int id = 0; id < nodeCount; id++) {
+            representatives[id] = id;
+        }
+        boolean structural = false;
+        for (int i = 0; i < count; i++) {
+            if (!treeEdge[i]) {
+                continue;
+            }
+            int a = find(representatives, parentIds[i]), b = find(representatives, childIds[i]);
+            if (a == b) {
+                structural = true;
+                report("Edge [" + parents[i] + ", " + children[i] + "] introduces a cycle!");
+            } else {
+                representatives[b] = a;
+            }
+        }
+
+        int root = -1, rootCount = 0;
+        StringBuilder roots = new StringBuilder();
+        for (int id = 0; id < nodeCount; id++) {
+            if (parentOf[id] == -1) {
+                if (rootCount < MAX_REPORTED_PROBLEMS) {
+                    roots.append(rootCount == 0 ? "" : ", ").append(indexes[id]);
+                }
+                root = indexes[id];
+                rootCount++;
+            }
+        }
+        if (rootCount == 0) {
+            structural = true;
+            report("No root can be selected");
+        } else if (rootCount > 1) {
+            structural = true;
+            report("Tree is not connected and multiple roots exist! [" + roots
+                    + (rootCount > MAX_REPORTED_PROBLEMS ? ", ..." : "") + "]");
+        }
+
+        if (structural) {
+            throw new IllegalArgumentException(getMessage());
+        } else if (duplicateParents > 0) {
+            throw new NodeAlreadyExistsException(getMessage());
+        }
+        return root;
+    }
+
+    /**
+     * @return dense id of the node index, a new one if index was not seen before
+     * */
+    private static int getId(IntIntHashMap ids, int index) {
+        int id = ids.get(index, -1);
+        if (id == -1) {
+            id = ids.size();
+            ids.put(index, id);
+        }
+        return id;
+    }
+
+    /**
+     * Find with path halving
+     * */
+    private static int find(int[] representatives, int id) {
+        while (representatives[id] != id) {
+            representatives[id] = representatives[representatives[id]];
+            id = representatives[id];
+        }
+        return id;
+    }
+}
@@ -0,0 +1,850 @@
+package main.java;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Out-of-core variant of {@link TreeTransformer#getTransformations}, for trees that do not fit into the heap.
+ * Both edge files are converted into binary files of (parent, child) records sorted by external merge sort
+ * (spill runs are written to a temporary directory). Trees are then explored level by level: children of a level
+ * are looked up in the sorted edge file by a forward (galloping) search for every node of the level, so the edge
+ * file is never rescanned per level and deep trees (e.g. chains) cost O(E log E) instead of O(depth * E).
+ * All the levels are appended to a single file, levels that fit into memory are sorted in memory, bigger ones
+ * are spilled like the edges. The same set of Remove/Add instructions as the in-memory greedy
+ * algorithm is emitted: removals bottom-up (deepest level first) followed by additions top-down.
+ * Memory usage is bounded by the given limit (plus a constant amount of stream buffers).
+ * Every edge file has to describe a tree: nodes with several parents, cycles and nodes not connected to the root
+ * are rejected.
+ */
+public class ExternalTreeTransformer {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int RECORD_SIZE = Long.BYTES;
+    private static final int MAX_FAN_IN = 64; // maximal number of runs merged at once
+    private static final int MIN_RECORDS = 2;
+
+    private final int maxRecordsInMemory;
+    private final Path tempDirectory;
+    private int fileCounter;
+
+    /**
+     * @param memoryLimit maximal number of bytes used for in-memory sorting
+     * @param tempDirectory directory for spill files to be written to
+     * */
+    public ExternalTreeTransformer(long memoryLimit, Path tempDirectory) {
+        this.maxRecordsInMemory = (int) Math.max(MIN_RECORDS, Math.min(memoryLimit / RECORD_SIZE, Integer.MAX_VALUE - 8));
+        this.tempDirectory = tempDirectory;
+    }
+
+    /**
+     * Computes transformation instruction sequence from given to desired tree for the trees given in file1 and file2
+     * without materializing them in memory. Spill files are written to a fresh temporary directory that is
+     * removed afterwards.
+     * @param file1 file where given tree is defined (".gz" files are decompressed on the fly)
+     * @param file2 file where the desired tree is defined (".gz" files are decompressed on the fly)
+     * @param out destination of transformation instructions (without a trailing comma)
+     * @param memoryLimit maximal number of bytes used for in-memory sorting
+     * @throws IllegalArgumentException if tree description format was invalid, tree had no or multiple roots,
+     * some node had several parents or some nodes were not connected to the root (e.g. a cycle)
+     * @throws NumberFormatException if some nodes index was not integer
+     * @throws IOException if file operations failed
+     * */
+    public static void getTransformationsFromFiles(String file1, String file2, Appendable out, long memoryLimit)
+            throws IOException {
+        Path tempDirectory = Files.createTempDirectory("tree-transformer");
+        try {
+            new ExternalTreeTransformer(memoryLimit, tempDirectory).getTransformations(file1, file2, out);
+        } finally {
+            try (var files = Files.list(tempDirectory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.deleteIfExists(tempDirectory);
+        }
+    }
+
+    /**
+     * Computes transformation instruction sequence from given to desired tree for the trees given in file1 and file2
+     * @param file1 file where given tree is defined
+     * @param file2 file where the desired tree is defined
+     * @param out destination of transformation instructions (without a trailing comma)
+     * @throws IOException if file operations failed
+     * */
+    public void getTransformations(String file1, String file2, Appendable out) throws IOException {
+        File given = null, desired = null, common = null;
+        Levels givenLevels = null, desiredLevels = null, keptLevels = null;
+        try {
+            given = sortEdges(file1);
+            desired = sortEdges(file2);
+            Integer givenRoot = findRoot(given);
+            Integer desiredRoot = findRoot(desired);
+
+            givenLevels = givenRoot == null ? new Levels(null, null) : getLevels(given, givenRoot);
+            checkConnected(given, givenLevels);
+            desiredLevels = desiredRoot == null ? new Levels(null, null) : getLevels(desired, desiredRoot);
+            checkConnected(desired, desiredLevels);
+            // nodes are kept iff their whole path from the root is present in both trees
+            keptLevels = new Levels(null, null);
+            if (givenRoot != null && givenRoot.equals(desiredRoot)) {
+                common = intersect(given, desired);
+                keptLevels = getLevels(common, givenRoot);
+                delete(common);
+            }
+            delete(given);
+            delete(desired);
+
+            InstructionWriter writer = new InstructionWriter(out);
+            // remove bottom-up
+            for (int depth = givenLevels.size() - 1; depth >= 0; depth--) {
+                LevelReader level = givenLevels.open(depth);
+                LevelReader keptLevel = keptLevels.open(depth);
+                while (level.hasNext()) {
+                    int child = high(level.nextLong());
+                    if (!skipTo(keptLevel, child)) {
+                        writer.remove(child);
+                    }
+                }
+            }
+            // add top-down, root is implicitly created by the first addition
+            for (int depth = 1; depth < desiredLevels.size(); depth++) {
+                LevelReader level = desiredLevels.open(depth);
+                LevelReader keptLevel = keptLevels.open(depth);
+                while (level.hasNext()) {
+                    long record = level.nextLong();
+                    int child = high(record);
+                    if (!skipTo(keptLevel, child)) {
+                        writer.add(low(record), child);
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // spill files are removed on failures as well
+            for (File file : Arrays.asList(given, desired, common)) {
+                if (file != null) {
+                    delete(file);
+                }
+            }
+            for (Levels levels : Arrays.asList(givenLevels, desiredLevels, keptLevels)) {
+                if (levels != null) {
+                    levels.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that all the edges were reached from the root (a tree has exactly one edge per non-root node)
+     * @throws IllegalArgumentException if some nodes are not connected to the root
+     * */
+    private static void checkConnected(File edges, Levels levels) {
+        long edgeCount = edges.length() / RECORD_SIZE;
+        if (edgeCount > 0 && levels.getRecordCount() != edgeCount + 1) {
+            throw new IllegalArgumentException("Incorrect tree structure provided! Some nodes are not connected "
+                    + "to the root or form a cycle!");
+        }
+    }
+
+    /**
+     * Advances reader (sorted by high part) until the record with high part >= key
+     * @return true if a record with high part equal to key was found
+     * */
+    private static boolean skipTo(PeekingIterator reader, int key) {
+        while (reader.hasNext() && high(reader.peek()) < key) {
+            reader.nextLong();
+        }
+        return reader.hasNext() && high(reader.peek()) == key;
+    }
+
+    /**
+     * Packs two ints into a long, such that signed ordering of longs is the (high, low) ordering of ints
+     * */
+    static long pack(int high, int low) {
+        return ((long) high << 32) | ((low ^ Integer.MIN_VALUE) & 0xffffffffL);
+    }
+
+    static int high(long record) {
+        return (int) (record >> 32);
+    }
+
+    static int low(long record) {
+        return ((int) record) ^ Integer.MIN_VALUE;
+    }
+
+    /**
+     * Parses edge file into a file of distinct (parent, child) records sorted by parent, then child
+     * @param file edge file in the [parent, child][parent, child]... format
+     * @return sorted edge records
+     * */
+    private File sortEdges(String file) throws IOException {
+        try (BufferedReader reader = TreeFiles.newReader(file)) {
+            Iterator<String> edges = Tree.getEdges(reader);
+            return sort(new PrimitiveIterator.OfLong() {
+                @Override
+                public boolean hasNext() {
+                    return edges.hasNext();
+                }
+
+                @Override
+                public long nextLong() {
+                    return parseEdge(edges.next());
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses "1, 2" into a packed (parent, child) record
+     * @throws IllegalArgumentException if edge has not exactly two elements
+     * @throws NumberFormatException if some index was not integer
+     * */
+    private static long parseEdge(String edge) {
+        String[] elements = edge.replaceAll(" ", "").split(",");
+        if (elements.length != 2) {
+            throw new IllegalArgumentException("Incorrect tree structure provided! Edge [" + edge + "] is invalid!");
+        }
+        int parent, child;
+        try {
+            parent = Integer.parseInt(elements[0]);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Invalid parent index provided for edge [" + edge + "]");
+        }
+        try {
+            child = Integer.parseInt(elements[1]);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException("Invalid child index provided for edge [" + edge + "]");
+        }
+        return pack(parent, child);
+    }
+
+    /**
+     * Returns the only parent that is not a child of any other node
+     * @param edges sorted edge records
+     * @return index of the root, null if there are no edges
+     * @throws IllegalArgumentException if there is no root or multiple roots, or some node has several parents
+     * */
+    private Integer findRoot(File edges) throws IOException {
+        File children;
+        try (RecordReader reader = new RecordReader(edges)) {
+            if (!reader.hasNext()) {
+                return null;
+            }
+            children = sort(new PrimitiveIterator.OfLong() {
+                @Override
+                public boolean hasNext() {
+                    return reader.hasNext();
+                }
+
+                @Override
+                public long nextLong() {
+                    long edge = reader.nextLong();
+                    return pack(low(edge), high(edge));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        // (child, parent) records are sorted by child, so several parents of a child are adjacent
+        Integer severalParents = null;
+        try (RecordReader reader = new RecordReader(children)) {
+            boolean first = true;
+            int previous = 0;
+            while (severalParents == null && reader.hasNext()) {
+                int child = high(reader.nextLong());
+                if (!first && child == previous) {
+                    severalParents = child;
+                }
+                previous = child;
+                first = false;
+            }
+        }
+        if (severalParents != null) {
+            delete(children);
+            throw new IllegalArgumentException("Incorrect tree structure provided! Node " + severalParents
+                    + " has several parents!");
+        }
+        List<Integer> rootCandidates = new ArrayList<>();
+        try (RecordReader parents = new RecordReader(edges); RecordReader childReader = new RecordReader(children)) {
+            while (parents.hasNext()) {
+                int parent = high(parents.nextLong());
+                while (parents.hasNext() && high(parents.peek()) == parent) {
+                    parents.nextLong();
+                }
+                if (!skipTo(childReader, parent) && rootCandidates.size() < 2) {
+                    rootCandidates.add(parent);
+                }
+            }
+        }
+        delete(children);
+        if (rootCandidates.isEmpty()) {
+            throw new IllegalArgumentException("Incorrect tree structure provided! No root can be selected");
+        } else if (rootCandidates.size() > 1) {
+            throw new IllegalArgumentException("Incorrect tree structure provided! Tree is not connected and multiple roots" +
+                    "exist!\n" + rootCandidates);
+        }
+        return rootCandidates.get(0);
+    }
+
+    /**
+     * Returns edges present in both sorted edge files
+     * */
+    private File intersect(File first, File second) throws IOException {
+        File result = newFile();
+        try (RecordReader a = new RecordReader(first); RecordReader b = new RecordReader(second);
+             RecordWriter writer = new RecordWriter(result)) {
+            while (a.hasNext() && b.hasNext()) {
+                long x = a.peek(), y = b.peek();
+                if (x < y) {
+                    a.nextLong();
+                } else if (x > y) {
+                    b.nextLong();
+                } else {
+                    writer.write(x);
+                    a.nextLong();
+                    b.nextLong();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Splits the tree into levels by breadth-first search: children of level i are looked up in the edges
+     * (sorted by parent) for the nodes of level i in ascending order, so every lookup continues forward
+     * from the previous one and no level rescans the edge file. The last level is kept in memory as long as
+     * it fits into half of the memory limit (the other half is left for sorting the next level), otherwise
+     * its sorted spill file is read for the next level. Nothing is kept in memory per level, so deep trees
+     * do not grow the heap either.
+     * @param edges sorted edge records of the tree
+     * @param root root index of the tree
+     * @return levels of (child, parent) records sorted by child, level 0 contains the root only
+     * @throws IllegalArgumentException if there are more levels than edges (only possible for a cycle)
+     * */
+    private Levels getLevels(File edges, int root) throws IOException {
+        Levels levels = new Levels(newFile(), newFile());
+        long edgeCount = edges.length() / RECORD_SIZE;
+        int limit = Math.max(1, maxRecordsInMemory / 2);
+        File frontierFile = null; // sorted last level if it did not fit into memory
+        try (RecordWriter levelWriter = new RecordWriter(levels.file);
+             RecordWriter endWriter = new RecordWriter(levels.ends);
+             RecordIndex index = new RecordIndex(edges)) {
+            long[] frontier = {pack(root, root)}; // null if the last level did not fit into memory
+            int frontierSize = 1;
+            levelWriter.write(frontier[0]);
+            endWriter.write(levels.addLevel(1));
+            while (true) {
+                if (levels.size() > edgeCount + 1) {
+                    throw new IllegalArgumentException("Incorrect tree structure provided! Tree contains a cycle!");
+                }
+                long[] buffer = new long[Math.min(limit, 16)];
+                int size = 0;
+                File spilled = null;
+                try (RecordReader frontierReader = new RecordReader(frontierFile)) {
+                    ChildIterator children = new ChildIterator(frontier == null
+                            ? frontierReader : Arrays.stream(frontier, 0, frontierSize).iterator(), index);
+                    while (children.hasNext()) {
+                        if (size == buffer.length) {
+                            if (size == limit) {
+                                List<File> runs = new ArrayList<>();
+                                runs.add(writeRun(buffer, size));
+                                buffer = null;
+                                spilled = sort(children, limit, runs);
+                                break;
+                            }
+                            buffer = Arrays.copyOf(buffer, (int) Math.min(limit, 2L * size));
+                        }
+                        buffer[size++] = children.nextLong();
+                    }
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                if (frontierFile != null) {
+                    delete(frontierFile);
+                    frontierFile = null;
+                }
+                long count = 0;
+                if (spilled == null) {
+                    Arrays.sort(buffer, 0, size);
+                    for (int i = 0; i < size; i++) {
+                        levelWriter.write(buffer[i]);
+                    }
+                    count = size;
+                } else {
+                    frontierFile = spilled;
+                    try (RecordReader reader = new RecordReader(spilled)) {
+                        while (reader.hasNext()) {
+                            levelWriter.write(reader.nextLong());
+                            count++;
+                        }
+                    }
+                }
+                if (count == 0) {
+                    break;
+                }
+                endWriter.write(levels.addLevel(count));
+                frontier = buffer;
+                frontierSize = size;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (frontierFile != null) {
+                delete(frontierFile);
+            }
+            levels.delete();
+            throw e;
+        }
+        return levels;
+    }
+
+    /**
+     * Produces (child, parent) records of all the children of the frontier nodes (frontier is sorted by node)
+     * */
+    private static class ChildIterator implements PrimitiveIterator.OfLong {
+        private final PrimitiveIterator.OfLong frontier;
+        private final RecordIndex index;
+        private long position; // position of the next child edge in the index, never decreases
+        private int parent;
+        private boolean hasNext;
+
+        ChildIterator(PrimitiveIterator.OfLong frontier, RecordIndex index) {
+            this.frontier = frontier;
+            this.index = index;
+            advance();
+        }
+
+        private void advance() {
+            hasNext = false;
+            while (!hasNext && frontier.hasNext()) {
+                parent = high(frontier.nextLong());
+                position = index.seek(position, parent);
+                hasNext = position < index.count && high(index.get(position)) == parent;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            long edge = index.get(position++);
+            long result = pack(low(edge), parent);
+            hasNext = position < index.count && high(index.get(position)) == parent;
+            if (!hasNext) {
+                advance();
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Levels of a tree stored in a single file, one after another, with the end of every level in another file,
+     * so that the number of levels does not use any memory
+     * */
+    private static class Levels {
+        private final File file; // null if there are no levels
+        private final File ends; // number of records up to the end of every level, one record per level
+        private int size;
+        private long recordCount;
+        // opened on the first lookup, once all the levels are written
+        private RecordIndex index;
+        private RecordIndex endIndex;
+
+        Levels(File file, File ends) {
+            this.file = file;
+            this.ends = ends;
+        }
+
+        /**
+         * @return end of the level to be written to the file of ends
+         * */
+        long addLevel(long count) {
+            size++;
+            recordCount += count;
+            return recordCount;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * Levels and their ends are read through block caches, so that small levels read in any order
+         * do not open the files or fill a new buffer every time
+         * @return reader of the level, empty if there is no such level
+         * */
+        LevelReader open(int depth) throws IOException {
+            if (depth >= size) {
+                return new LevelReader(null, 0, 0);
+            }
+            if (endIndex == null) {
+                endIndex = new RecordIndex(ends);
+            }
+            if (index == null) {
+                index = new RecordIndex(file);
+            }
+            return new LevelReader(index, depth == 0 ? 0 : endIndex.get(depth - 1), endIndex.get(depth));
+        }
+
+        void delete() throws IOException {
+            for (RecordIndex levelIndex : Arrays.asList(index, endIndex)) {
+                if (levelIndex != null) {
+                    levelIndex.close();
+                }
+            }
+            index = null;
+            endIndex = null;
+            for (File levelFile : Arrays.asList(file, ends)) {
+                if (levelFile != null) {
+                    ExternalTreeTransformer.delete(levelFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reader of the records [position, end) of a record index
+     * */
+    private static class LevelReader implements PeekingIterator {
+        private final RecordIndex index;
+        private final long end;
+        private long position;
+
+        LevelReader(RecordIndex index, long start, long end) {
+            this.index = index;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return position < end;
+        }
+
+        @Override
+        public long peek() {
+            return index.get(position);
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return index.get(position++);
+        }
+    }
+
+    /**
+     * External merge sort: records are sorted in chunks that fit the memory limit, spilled to runs
+     * and merged (at most {@link #MAX_FAN_IN} runs at once). Duplicate records are dropped.
+     * @param records records to be sorted
+     * @return file with distinct sorted records
+     * */
+    private File sort(PrimitiveIterator.OfLong records) throws IOException {
+        return sort(records, maxRecordsInMemory, new ArrayList<>());
+    }
+
+    /**
+     * @param records records to be sorted
+     * @param maxRecords maximal number of records sorted in memory
+     * @param runs already written runs to be merged with the records
+     * @return file with distinct sorted records
+     * */
+    private File sort(PrimitiveIterator.OfLong records, int maxRecords, List<File> runs) throws IOException {
+        long[] buffer = new long[Math.min(maxRecords, 1024)];
+        int size = 0;
+        while (records.hasNext()) {
+            if (size == buffer.length) {
+                if (size == maxRecords) {
+                    runs.add(writeRun(buffer, size));
+                    size = 0;
+                } else {
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(maxRecords, 2L * size));
+                }
+            }
+            buffer[size++] = records.nextLong();
+        }
+        if (size > 0 || runs.isEmpty()) {
+            runs.add(writeRun(buffer, size));
+        }
+        buffer = null;
+        while (runs.size() > 1) {
+            List<File> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                merged.add(merge(runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN))));
+            }
+            runs = merged;
+        }
+        return runs.get(0);
+    }
+
+    private File writeRun(long[] buffer, int size) throws IOException {
+        Arrays.sort(buffer, 0, size);
+        File run = newFile();
+        try (RecordWriter writer = new RecordWriter(run)) {
+            for (int i = 0; i < size; i++) {
+                if (i == 0 || buffer[i] != buffer[i - 1]) {
+                    writer.write(buffer[i]);
+                }
+            }
+        }
+        return run;
+    }
+
+    /**
+     * Merges sorted runs into one sorted run (runs are deleted afterwards)
+     * */
+    private File merge(List<File> runs) throws IOException {
+        File result = newFile();
+        List<RecordReader> readers = new ArrayList<>();
+        PriorityQueue<RecordReader> queue = new PriorityQueue<>(Comparator.comparingLong(RecordReader::peek));
+        try (RecordWriter writer = new RecordWriter(result)) {
+            for (File run : runs) {
+                RecordReader reader = new RecordReader(run);
+                readers.add(reader);
+                if (reader.hasNext()) {
+                    queue.add(reader);
+                }
+            }
+            boolean first = true;
+            long last = 0;
+            while (!queue.isEmpty()) {
+                RecordReader reader = queue.poll();
+                long record = reader.nextLong();
+                if (first || record != last) {
+                    writer.write(record);
+                    last = record;
+                    first = false;
+                }
+                if (reader.hasNext()) {
+                    queue.add(reader);
+                }
+            }
+        } finally {
+            for (RecordReader reader : readers) {
+                reader.close();
+            }
+        }
+        for (File run : runs) {
+            delete(run);
+        }
+        return result;
+    }
+
+    private File newFile() {
+        return tempDirectory.resolve("records-" + (fileCounter++) + ".bin").toFile();
+    }
+
+    private static void delete(File file) throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Sequential writer of records
+     * */
+    private static class RecordWriter implements Closeable {
+        private final DataOutputStream out;
+
+        RecordWriter(File file) throws IOException {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE));
+        }
+
+        void write(long record) throws IOException {
+            out.writeLong(record);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Sequential reader of records with one record look-ahead, a null file is read as an empty one
+     * */
+    private static class RecordReader implements Closeable, PeekingIterator {
+        private final DataInputStream in;
+        private long remaining;
+        private long next;
+        private boolean hasNext;
+
+        RecordReader(File file) throws IOException {
+            this(file, 0, file == null ? 0 : file.length() / RECORD_SIZE);
+        }
+
+        /**
+         * Reads count records starting at the record first
+         * */
+        RecordReader(File file, long first, long count) throws IOException {
+            if (file == null) {
+                in = null;
+                remaining = 0;
+            } else {
+                FileInputStream stream = new FileInputStream(file);
+                stream.getChannel().position(first * RECORD_SIZE);
+                in = new DataInputStream(new BufferedInputStream(stream, BUFFER_SIZE));
+                remaining = count;
+            }
+            advance();
+        }
+
+        private void advance() throws IOException {
+            hasNext = remaining > 0;
+            if (hasNext) {
+                next = in.readLong();
+                remaining--;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return hasNext;
+        }
+
+        @Override
+        public long peek() {
+            return next;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext) {
+                throw new NoSuchElementException();
+            }
+            long result = next;
+            try {
+                advance();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return result;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Iterator of records with one record look-ahead
+     * */
+    private interface PeekingIterator extends PrimitiveIterator.OfLong {
+        long peek();
+    }
+
+    /**
+     * Random access to a record file through a cache of one aligned block,
+     * lookups moving by small steps (in either direction) mostly stay in the cached block
+     * */
+    private static class RecordIndex implements Closeable {
+        private static final int BLOCK_RECORDS = BUFFER_SIZE / RECORD_SIZE;
+
+        private final FileChannel channel;
+        private final long count;
+        private final ByteBuffer block = ByteBuffer.allocate(BUFFER_SIZE);
+        private long blockStart = -1; // first record of the cached block
+        private int blockRecords;
+
+        RecordIndex(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            count = channel.size() / RECORD_SIZE;
+        }
+
+        long get(long record) {
+            if (record < blockStart || record >= blockStart + blockRecords) {
+                long start = record - record % BLOCK_RECORDS;
+                try {
+                    block.clear();
+                    int read;
+                    do {
+                        read = channel.read(block, start * RECORD_SIZE + block.position());
+                    } while (read > 0 && block.hasRemaining());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                blockStart = start;
+                blockRecords = block.position() / RECORD_SIZE;
+            }
+            return block.getLong((int) (record - blockStart) * RECORD_SIZE);
+        }
+
+        /**
+         * Galloping search forward from the record
+         * @return first record at or after from with high part >= key, count if there is none
+         * */
+        long seek(long from, int key) {
+            if (from >= count || high(get(from)) >= key) {
+                return from;
+            }
+            // high part of the record low is always < key
+            long low = from, step = 1;
+            while (low + step < count && high(get(low + step)) < key) {
+                low += step;
+                step *= 2;
+            }
+            long high = Math.min(low + step, count);
+            while (high - low > 1) {
+                long middle = (low + high) >>> 1;
+                if (high(get(middle)) < key) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return high;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes instructions in the same format as {@link TreeTransformer#getTransformations}
+     * */
+    private static class InstructionWriter {
+        private final Appendable out;
+        private boolean first = true;
+
+        InstructionWriter(Appendable out) {
+            this.out = out;
+        }
+
+        private void separate() throws IOException {
+            if (!first) {
+                out.append(", ");
+            }
+            first = false;
+        }
+
+        void remove(int index) throws IOException {
+            separate();
+            out.append("Remove(").append(String.valueOf(index)).append(")");
+        }
+
+        void add(int parent, int child) throws IOException {
+            separate();
+            out.append("Add(").append(String.valueOf(parent)).append(", ").append(String.valueOf(child)).append(")");
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package main.java;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Standalone benchmark of tree files: times round trips (write, then read back) of a generated tree
+ * as an edge list and as a serialized tree, both plain and gzip compressed, and reports throughput and CPU time.
+ * Throughput is given in MB of the plain file per second, so compressed and plain formats are directly comparable.
+ * Usage: java -cp TreeTransformer.jar main.java.FileBenchmark (<shape> <size> (--fan-out <k>)? (--seed <seed>)? (--rounds <n>)?)?
+ */
+public class FileBenchmark {
+    private static final String[] FORMATS = {".txt", ".txt" + TreeFiles.GZIP_EXTENSION,
+            Tree.EXTENSION, Tree.EXTENSION + TreeFiles.GZIP_EXTENSION};
+
+    /**
+     * Round trip measurements of one file format (best of all rounds)
+     */
+    public static class Result {
+        private final String format;
+        private final long fileBytes;
+        private final long plainBytes;
+        private final long writeNanos;
+        private final long writeCpuNanos;
+        private final long readNanos;
+        private final long readCpuNanos;
+
+        Result(String format, long fileBytes, long plainBytes, long writeNanos, long writeCpuNanos,
+               long readNanos, long readCpuNanos) {
+            this.format = format;
+            this.fileBytes = fileBytes;
+            this.plainBytes = plainBytes;
+            this.writeNanos = writeNanos;
+            this.writeCpuNanos = writeCpuNanos;
+            this.readNanos = readNanos;
+            this.readCpuNanos = readCpuNanos;
+        }
+
+        /**
+         * @return extension of the measured files, e.g. ".tt.gz"
+         * */
+        public String getFormat() {
+            return format;
+        }
+
+        /**
+         * @return size of the written file in bytes
+         * */
+        public long getFileBytes() {
+            return fileBytes;
+        }
+
+        /**
+         * @return megabytes of the plain file written per second
+         * */
+        public double getWriteThroughput() {
+            return throughput(writeNanos);
+        }
+
+        /**
+         * @return megabytes of the plain file read per second
+         * */
+        public double getReadThroughput() {
+            return throughput(readNanos);
+        }
+
+        /**
+         * @return CPU time of writing in nanoseconds
+         * */
+        public long getWriteCpuNanos() {
+            return writeCpuNanos;
+        }
+
+        /**
+         * @return CPU time of reading in nanoseconds
+         * */
+        public long getReadCpuNanos() {
+            return readCpuNanos;
+        }
+
+        private double throughput(long nanos) {
+            return nanos == 0 ? 0 : plainBytes / 1e6 / (nanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "%-7s %10.2f MB | write %8.1f MB/s, CPU %8.1f ms | read %8.1f MB/s, CPU %8.1f ms",
+                    format, fileBytes / 1e6, getWriteThroughput(), writeCpuNanos / 1e6,
+                    getReadThroughput(), readCpuNanos / 1e6);
+        }
+    }
+
+    /**
+     * Writes and reads the tree back in every format (plain and compressed edge list and serialized tree)
+     * @param tree tree to be written, must not be empty
+     * @param directory directory for the files to be written to (files are deleted afterwards)
+     * @param rounds number of round trips per format, the fastest one is reported (earlier ones warm up the JIT)
+     * @return results in the order: edge list, compressed edge list, serialized tree, compressed serialized tree
+     * @throws IOException if file operations failed
+     * @throws IllegalStateException if a tree read back differs from the written one
+     * */
+    public static List<Result> run(Tree tree, Path directory, int rounds) throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        List<Result> results = new ArrayList<>();
+        long plainBytes = 0;
+        for (String format : FORMATS) {
+            String path = File.createTempFile("benchmark", format, directory.toFile()).getPath();
+            try {
+                long writeNanos = Long.MAX_VALUE, writeCpu = Long.MAX_VALUE;
+                long readNanos = Long.MAX_VALUE, readCpu = Long.MAX_VALUE;
+                for (int round = 0; round < Math.max(1, rounds); round++) {
+                    long cpu = threads.getCurrentThreadCpuTime();
+                    long start = System.nanoTime();
+                    TreeGenerator.write(tree, path);
+                    writeNanos = Math.min(writeNanos, System.nanoTime() - start);
+                    writeCpu = Math.min(writeCpu, threads.getCurrentThreadCpuTime() - cpu);
+
+                    cpu = threads.getCurrentThreadCpuTime();
+                    start = System.nanoTime();
+                    Tree read = TreeFiles.stripCompression(path).endsWith(Tree.EXTENSION)
+                            ? Tree.deserializeTree(path) : TreeTransformer.getTreeFromFile(path);
+                    readNanos = Math.min(readNanos, System.nanoTime() - start);
+                    readCpu = Math.min(readCpu, threads.getCurrentThreadCpuTime() - cpu);
+                    if (!tree.equals(read)) {
+                        throw new IllegalStateException("Tree read from " + path + " differs from the written one!");
+                    }
+                }
+                long fileBytes = Files.size(Path.of(path));
+                if (!TreeFiles.isCompressed(path)) {
+                    plainBytes = fileBytes; // plain format always precedes its compressed one
+                }
+                results.add(new Result(format, fileBytes, plainBytes, writeNanos, writeCpu, readNanos, readCpu));
+            } finally {
+                Files.deleteIfExists(Path.of(path));
+            }
+        }
+        return results;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> positional = new ArrayList<>();
+        int fanOut = 2;
+        long seed = 0;
+        int rounds = 3;
+        TreeGenerator generator;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--fan-out" -> fanOut = Integer.parseInt(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    case "--rounds" -> rounds = Integer.parseInt(args[++i]);
+                    default -> positional.add(args[i]);
+                }
+            }
+            if (positional.size() != 0 && positional.size() != 2) {
+                throw new IllegalArgumentException();
+            }
+            generator = positional.isEmpty() ? new TreeGenerator(TreeGenerator.Shape.RANDOM, 1_000_000, fanOut, seed)
+                    : new TreeGenerator(TreeGenerator.Shape.of(positional.get(0)), Integer.parseInt(positional.get(1)),
+                    fanOut, seed);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.out.println("Usage: FileBenchmark (<shape> <size> (--fan-out <k>)? (--seed <seed>)? (--rounds <n>)?)?");
+            return;
+        }
+        Tree tree = generator.generateTree();
+        System.out.println("Round trips of " + tree.size() + " nodes (best of " + rounds + "):");
+        for (Result result : run(tree, Path.of(System.getProperty("java.io.tmpdir")), rounds)) {
+            System.out.println(result);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package main.java;
+
+import java.util.Arrays;
+
+/**
+ * Minimal int -> int hash map (open addressing with linear probing) without boxing,
+ * used by the indexes that map arbitrary node indexes onto dense positions.
+ */
+class IntIntHashMap {
+    private int[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+
+    IntIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(int key) {
+        int mask = keys.length - 1;
+        int position = hash(key) & mask;
+        while (used[position] && keys[position] != key) {
+            position = (position + 1) & mask;
+        }
+        return position;
+    }
+
+    /**
+     * @return value of the key, missing if key is not present
+     * */
+    int get(int key, int missing) {
+        int position = find(key);
+        return used[position] ? values[position] : missing;
+    }
+
+    boolean containsKey(int key) {
+        return used[find(key)];
+    }
+
+    /**
+     * Puts the value for the key (replacing the old one)
+     * @return true if key was not present before
+     * */
+    boolean put(int key, int value) {
+        int position = find(key);
+        values[position] = value;
+        if (used[position]) {
+            return false;
+        }
+        keys[position] = key;
+        used[position] = true;
+        if (++size * 2 > keys.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    private void rehash() {
+        int[] oldKeys = keys, oldValues = values;
+        boolean[] oldUsed = used;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        used = new boolean[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                int position = find(oldKeys[i]);
+                keys[position] = oldKeys[i];
+                values[position] = oldValues[i];
+                used[position] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Load-test driver of the interactive mode: replays command streams against the interactive engine
+ * ({@link TreeTransformer#executeCommand(String, TreeRenderer, PrintStream)}, including printing of the changes
+ * of the tree after every command) and reports throughput and latency percentiles.
+ */
+public class LoadTest {
+    /**
+     * Results of a load test
+     */
+    public static class Report {
+        private final long[] latencies; // sorted, in nanoseconds
+        private final long totalNanos;
+        private final int failures;
+
+        Report(long[] latencies, long totalNanos, int failures) {
+            this.latencies = latencies;
+            this.totalNanos = totalNanos;
+            this.failures = failures;
+            Arrays.sort(this.latencies);
+        }
+
+        /**
+         * @return number of executed commands
+         * */
+        public int getCommandCount() {
+            return latencies.length;
+        }
+
+        /**
+         * @return number of commands that failed
+         * */
+        public int getFailureCount() {
+            return failures;
+        }
+
+        /**
+         * @return executed commands per second
+         * */
+        public double getThroughput() {
+            return totalNanos == 0 ? 0 : latencies.length * 1e9 / totalNanos;
+        }
+
+        /**
+         * Returns latency percentile (nearest-rank)
+         * @param percentile percentile between 0 and 100, e.g. 99
+         * @return latency of a command in nanoseconds, 0 if no commands were executed
+         * */
+        public long getLatencyPercentile(double percentile) {
+            if (latencies.length == 0) {
+                return 0;
+            }
+            int rank = (int) Math.ceil(percentile / 100 * latencies.length);
+            return latencies[Math.min(latencies.length - 1, Math.max(0, rank - 1))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "Commands: %d (failed: %d)%nThroughput: %.1f commands/s%n"
+                            + "Latency (us): p50 %.1f, p90 %.1f, p99 %.1f, max %.1f",
+                    getCommandCount(), failures, getThroughput(),
+                    getLatencyPercentile(50) / 1e3, getLatencyPercentile(90) / 1e3,
+                    getLatencyPercentile(99) / 1e3, getLatencyPercentile(100) / 1e3);
+        }
+    }
+
+    /**
+     * Generates a stream of valid ADD and REMOVE commands for the tree (tree is not modified)
+     * About half of the commands add new leaves under random nodes, the others remove random leaves.
+     * @param tree tree the commands will be executed on
+     * @param count number of commands
+     * @param seed seed of the random generator
+     * @return commands, e.g. ["ADD(1, 9)", "REMOVE(4)", ...]
+     * @throws IllegalArgumentException if tree is empty
+     * */
+    public static List<String> generateCommands(TreeView tree, int count, long seed) {
+        if (tree.isEmpty()) {
+            throw new IllegalArgumentException("Commands cannot be generated for an empty tree!");
+        }
+        Tree simulation = Tree.copyOf(tree);
+        Random random = new Random(seed);
+        ArrayList<Integer> ids = new ArrayList<>(simulation.size());
+        int nextIndex = 0;
+        ArrayList<Integer> queue = new ArrayList<>();
+        queue.add(simulation.getRootIndex());
+        for (int i = 0; i < queue.size(); i++) {
+            int current = queue.get(i);
+            ids.add(current);
+            nextIndex = Math.max(nextIndex, current + 1);
+            for (int j = 0; j < simulation.getChildCount(current); j++) {
+                queue.add(simulation.getChild(current, j));
+            }
+        }
+        List<String> commands = new ArrayList<>(count);
+        while (commands.size() < count) {
+            int position = random.nextInt(ids.size());
+            int node = ids.get(position);
+            if (random.nextBoolean() && node != simulation.getRootIndex() && simulation.getChildCount(node) == 0) {
+                simulation.removeNode(node);
+                ids.set(position, ids.get(ids.size() - 1));
+                ids.remove(ids.size() - 1);
+                commands.add("REMOVE(" + node + ")");
+            } else {
+                simulation.addNode(node, nextIndex);
+                ids.add(nextIndex);
+                commands.add("ADD(" + node + ", " + nextIndex++ + ")");
+            }
+        }
+        return commands;
+    }
+
+    /**
+     * Executes commands one by one on the tree and measures latency of every command
+     * @param tree tree the commands are executed on (modified)
+     * @param commands commands to be executed
+     * @param outputStream stream the interactive output is printed to
+     * @return throughput and latencies of the commands
+     * */
+    public static Report run(Tree tree, List<String> commands, PrintStream outputStream) {
+        long[] latencies = new long[commands.size()];
+        int failures = 0;
+        TreeRenderer renderer = new TreeRenderer(tree);
+        long start = System.nanoTime();
+        for (int i = 0; i < commands.size(); i++) {
+            long commandStart = System.nanoTime();
+            try {
+                TreeTransformer.executeCommand(commands.get(i), renderer, outputStream);
+            } catch (IOException | RuntimeException e) {
+                failures++;
+            }
+            latencies[i] = System.nanoTime() - commandStart;
+        }
+        return new Report(latencies, System.nanoTime() - start, failures);
+    }
+
+    /**
+     * Same as {@link #run(Tree, List, PrintStream)}, but the interactive output is discarded
+     * */
+    public static Report run(Tree tree, List<String> commands) {
+        return run(tree, commands, new PrintStream(OutputStream.nullOutputStream()));
+    }
+}
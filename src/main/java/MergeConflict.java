@@ -0,0 +1,95 @@
+package main.java;
+
+import java.util.Objects;
+
+/**
+ * Change of a node that could not be merged by {@link TreeMerger#merge(Tree, Tree, Tree)}
+ * State of the node is given by its parent in the base tree and in both edited trees: index of the parent,
+ * the node itself if it is the root, null if it is not present in the tree.
+ * Conflicting changes are left out of the merged tree, the node keeps its state of the base tree.
+ */
+public class MergeConflict {
+    public enum Type {
+        /** both sides changed the node differently (moved it to different parents, or moved and deleted it) */
+        DIVERGENT,
+        /** node was added or moved under a parent deleted by the other side (e.g. edit inside a deleted subtree) */
+        ORPHAN,
+        /** moves of both sides together make the node its own ancestor */
+        CYCLE,
+        /** both sides created different roots */
+        ROOT
+    }
+
+    private final Type type;
+    private final int node;
+    private final Integer baseParent;
+    private final Integer ourParent;
+    private final Integer theirParent;
+
+    public MergeConflict(Type type, int node, Integer baseParent, Integer ourParent, Integer theirParent) {
+        this.type = type;
+        this.node = node;
+        this.baseParent = baseParent;
+        this.ourParent = ourParent;
+        this.theirParent = theirParent;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return index of the conflicting node
+     * */
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * @return parent of the node in the base tree (see class description)
+     * */
+    public Integer getBaseParent() {
+        return baseParent;
+    }
+
+    /**
+     * @return parent of the node in our tree (see class description)
+     * */
+    public Integer getOurParent() {
+        return ourParent;
+    }
+
+    /**
+     * @return parent of the node in their tree (see class description)
+     * */
+    public Integer getTheirParent() {
+        return theirParent;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MergeConflict that = (MergeConflict) o;
+        return type == that.type && node == that.node && Objects.equals(baseParent, that.baseParent)
+                && Objects.equals(ourParent, that.ourParent) && Objects.equals(theirParent, that.theirParent);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, node, baseParent, ourParent, theirParent);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d): base %s, ours %s, theirs %s", type, node, describe(baseParent),
+                describe(ourParent), describe(theirParent));
+    }
+
+    private String describe(Integer parent) {
+        if (parent == null) {
+            return "absent";
+        }
+        return parent == node ? "root" : "under " + parent;
+    }
+}
@@ -0,0 +1,59 @@
+package main.java;
+
+import java.util.List;
+
+/**
+ * Result of the three-way merge of trees (see {@link TreeMerger#merge(Tree, Tree, Tree)})
+ * Unchanged subtrees are recognized by their hashes, so the result is exact with high probability only:
+ * a hash collision loses changes inside the colliding subtree (see {@link TreeMerger}).
+ */
+public class MergeResult {
+    private final TreeMerger merger;
+    private final List<MergeConflict> conflicts;
+    private Tree tree; // built on the first request
+    private String transformations; // computed on the first request
+
+    MergeResult(TreeMerger merger, List<MergeConflict> conflicts) {
+        this.merger = merger;
+        this.conflicts = conflicts;
+    }
+
+    /**
+     * Returns merged tree, it is built on the first request by copying the base tree (O(n))
+     * @return merged tree, a new tree containing changes of both sides except for the conflicting ones
+     * */
+    public Tree getTree() {
+        if (tree == null) {
+            tree = merger.buildTree();
+        }
+        return tree;
+    }
+
+    /**
+     * @return conflicting changes left out of the merged tree, empty if the merge is clean
+     * */
+    public List<MergeConflict> getConflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return true if some changes were conflicting
+     * */
+    public boolean hasConflicts() {
+        return !conflicts.isEmpty();
+    }
+
+    /**
+     * Returns instructions transforming the base tree into the merged one, the same set of instructions as
+     * {@link TreeTransformer#getTransformations(TreeView, TreeView)} of the base and the merged tree gives
+     * (possibly in a different order, and unless subtree hashes collide), computed from the changes only,
+     * without building the merged tree
+     * @return a sequence of transformation instructions (without a trailing comma)
+     * */
+    public String getTransformations() {
+        if (transformations == null) {
+            transformations = merger.getTransformations();
+        }
+        return transformations;
+    }
+}
@@ -0,0 +1,89 @@
+package main.java;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Dictionary of node labels (strings, e.g. UUIDs, paths or 64-bit numbers) encoded into dense int indexes.
+ * Labels are encoded once while parsing, so trees, diff and serialization keep working on primitive ints
+ * and labels are decoded only when output is written. Index of a label is the order of its first occurrence
+ * (0, 1, 2, ...). Trees that are compared with each other must be encoded with the same dictionary.
+ * Dictionary is not thread safe.
+ */
+public class NodeDictionary {
+    private final HashMap<String, Integer> indexes = new HashMap<>();
+    private final ArrayList<String> labels = new ArrayList<>();
+
+    /**
+     * Returns index of the label, assigning the next free index to a new label
+     * @param label label of the node
+     * @return dense index of the label
+     * @throws IllegalArgumentException if label is empty
+     * */
+    public int encode(String label) {
+        Integer index = indexes.get(label);
+        if (index == null) {
+            if (label.isEmpty()) {
+                throw new IllegalArgumentException("Node label cannot be empty!");
+            }
+            index = labels.size();
+            indexes.put(label, index);
+            labels.add(label);
+        }
+        return index;
+    }
+
+    /**
+     * Returns index of the label without adding it to the dictionary
+     * @param label label of the node
+     * @return dense index of the label, -1 if label is not in the dictionary
+     * */
+    public int getIndex(String label) {
+        Integer index = indexes.get(label);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns label of the index
+     * @param index dense index of the label
+     * @return label that was encoded into index
+     * @throws IllegalArgumentException if index was not assigned by this dictionary
+     * */
+    public String decode(int index) {
+        if (index < 0 || index >= labels.size()) {
+            throw new IllegalArgumentException("Node " + index + " has no label in the dictionary!");
+        }
+        return labels.get(index);
+    }
+
+    /**
+     * @return number of labels in the dictionary
+     * */
+    public int size() {
+        return labels.size();
+    }
+
+    /**
+     * Appends label of the index into out (see {@link #decode(int)})
+     * If dictionary is null, index itself is appended.
+     * @param dictionary dictionary the index is encoded with, or null for plain indexes
+     * @param index index of the node
+     * @param out destination of the label
+     * @throws IOException if writing failed
+     * */
+    static void appendLabel(NodeDictionary dictionary, int index, Appendable out) throws IOException {
+        out.append(dictionary == null ? String.valueOf(index) : dictionary.decode(index));
+    }
+
+    /**
+     * Appends label of the index into sb (see {@link #appendLabel(NodeDictionary, int, Appendable)})
+     * */
+    static void appendLabel(NodeDictionary dictionary, int index, StringBuilder sb) {
+        if (dictionary == null) {
+            sb.append(index);
+        } else {
+            sb.append(dictionary.decode(index));
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package main.java;
+
+import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NotALeafException;
+import main.java.exceptions.ParentDoesNotExistException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+
+/**
+ * Tree stored outside of the Java heap, so that the number of nodes does not influence garbage collection.
+ * All the data lives in a single buffer (direct memory, or a memory-mapped file that can be reopened
+ * without any parsing) with the following layout:
+ *      header: magic, capacity, size, used slots, head of free slots, root slot
+ *      node records (one per slot): index, parent slot, first child slot, last child slot, next sibling slot,
+ *      child count
+ *      index map: open addressing table (linear probing) of slot + 1 (0 for an empty entry)
+ * The buffer only grows (in powers of two), removed slots are reused through a free list.
+ * Children of a node are a singly linked list sorted by index, which keeps sequential {@link #getChild(int, int)}
+ * calls cheap through a cursor and appending of increasing indexes O(1), but makes other insertions
+ * and removal O(number of siblings).
+ * Tree must be {@link #close() closed} after use, any access afterwards results in an {@link IllegalStateException}.
+ * Memory itself is released by the garbage collector (see {@link #close()}), as are the smaller buffers left behind
+ * by growing.
+ * As buffers are limited to 2GB and the capacity is a power of two (the index map is addressed by a bit mask),
+ * a tree can hold at most {@link #MAX_CAPACITY} = 2^25 (33,554,432) nodes.
+ */
+public class OffHeapTree implements TreeView, Closeable {
+    private static final int MAGIC = 0x54524545; // "TREE"
+    private static final int NONE = -1;
+    private static final int INITIAL_CAPACITY = 1024;
+    /** largest power of two capacity whose buffer (32 bytes per node) fits into 2GB */
+    public static final int MAX_CAPACITY = 1 << 25;
+
+    // header fields (byte offsets)
+    private static final int CAPACITY = 4;
+    private static final int SIZE = 8;
+    private static final int USED = 12;
+    private static final int FREE = 16;
+    private static final int ROOT = 20;
+    private static final int HEADER_BYTES = 24;
+
+    // record fields (byte offsets inside of a record)
+    private static final int INDEX = 0;
+    private static final int PARENT = 4;
+    private static final int FIRST_CHILD = 8;
+    private static final int LAST_CHILD = 12;
+    private static final int NEXT_SIBLING = 16;
+    private static final int CHILD_COUNT = 20;
+    private static final int RECORD_BYTES = 24;
+    private static final int FREE_SLOT = -1; // child count of a free slot
+
+    private final FileChannel channel; // null for direct memory
+    private ByteBuffer buffer;
+    private int capacity;
+    // cursor for sequential getChild calls
+    private int cursorSlot = NONE, cursorPosition, cursorChild;
+    private long modificationCount;
+
+    /**
+     * Creates an empty tree in direct (off-heap) memory
+     * */
+    public OffHeapTree() {
+        this(null, INITIAL_CAPACITY);
+    }
+
+    private OffHeapTree(FileChannel channel, int capacity) {
+        this.channel = channel;
+        this.buffer = allocate(capacity);
+        this.capacity = capacity;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(CAPACITY, capacity);
+        buffer.putInt(SIZE, 0);
+        buffer.putInt(USED, 0);
+        buffer.putInt(FREE, NONE);
+        buffer.putInt(ROOT, NONE);
+    }
+
+    private OffHeapTree(FileChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = buffer.getInt(CAPACITY);
+    }
+
+    /**
+     * Creates an empty tree backed by a memory-mapped file (existing file is overwritten)
+     * @param path file for the tree to be stored in
+     * @return empty tree backed by the file
+     * @throws IOException if file operations failed
+     * */
+    public static OffHeapTree create(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        try {
+            return new OffHeapTree(channel, INITIAL_CAPACITY);
+        } catch (UncheckedIOException e) {
+            channel.close();
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reopens a tree previously stored with {@link #create(Path)}, nothing is parsed or copied
+     * @param path file the tree is stored in
+     * @return tree backed by the file
+     * @throws IllegalArgumentException if file does not contain a tree
+     * @throws IOException if file operations failed
+     * */
+    public static OffHeapTree open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IllegalArgumentException("Incorrect file format! " + path + " does not contain a tree!");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.getInt(0) != MAGIC || bytesFor(buffer.getInt(CAPACITY)) != channel.size()) {
+                throw new IllegalArgumentException("Incorrect file format! " + path + " does not contain a tree!");
+            }
+            return new OffHeapTree(channel, buffer);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copies any tree into direct memory
+     * @param tree tree to be copied
+     * @return off-heap copy of the tree
+     * */
+    public static OffHeapTree copyOf(TreeView tree) {
+        OffHeapTree result = new OffHeapTree();
+        if (tree.isEmpty()) {
+            return result;
+        }
+        result.addRootNode(tree.getRootIndex());
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(tree.getRootIndex());
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int childCount = tree.getChildCount(current);
+            for (int i = 0; i < childCount; i++) {
+                int child = tree.getChild(current, i);
+                result.addNode(current, child);
+                queue.add(child);
+            }
+        }
+        return result;
+    }
+
+    private static long bytesFor(int capacity) {
+        // 2 index map entries (4 bytes each) per record
+        return HEADER_BYTES + (long) capacity * (RECORD_BYTES + 8);
+    }
+
+    private ByteBuffer allocate(int capacity) {
+        long bytes = bytesFor(capacity);
+        if (bytes > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Tree is too large to be stored off-heap!");
+        }
+        try {
+            ByteBuffer result = channel == null
+                    ? ByteBuffer.allocateDirect((int) bytes)
+                    : channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            return result.order(ByteOrder.LITTLE_ENDIAN);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return buffer of the tree, every public method starts with it so that internal methods never see a closed tree
+     * @throws IllegalStateException if tree is closed
+     * */
+    private ByteBuffer buffer() {
+        if (buffer == null) {
+            throw new IllegalStateException("Tree is already closed!");
+        }
+        return buffer;
+    }
+
+    private int record(int slot) {
+        return HEADER_BYTES + slot * RECORD_BYTES;
+    }
+
+    private int get(int slot, int field) {
+        return buffer.getInt(record(slot) + field);
+    }
+
+    private void set(int slot, int field, int value) {
+        buffer.putInt(record(slot) + field, value);
+    }
+
+    private int mapOffset() {
+        return HEADER_BYTES + capacity * RECORD_BYTES;
+    }
+
+    private int mapMask() {
+        return 2 * capacity - 1;
+    }
+
+    private static int hash(int index) {
+        int h = index * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return position of the index map entry for index (either holding index, or the empty one to insert into)
+     * */
+    private int findEntry(int index) {
+        int offset = mapOffset(), mask = mapMask();
+        int position = hash(index) & mask;
+        while (true) {
+            int entry = buffer.getInt(offset + position * 4);
+            if (entry == 0 || get(entry - 1, INDEX) == index) {
+                return position;
+            }
+            position = (position + 1) & mask;
+        }
+    }
+
+    /**
+     * @return slot of the node with index, NONE if it is not present
+     * */
+    private int findSlot(int index) {
+        return buffer().getInt(mapOffset() + findEntry(index) * 4) - 1;
+    }
+
+    private int getExistingSlot(int index) {
+        int slot = findSlot(index);
+        if (slot == NONE) {
+            throw new IllegalArgumentException("Node " + index + " is not present in the tree!");
+        }
+        return slot;
+    }
+
+    private void putEntry(int slot) {
+        buffer.putInt(mapOffset() + findEntry(get(slot, INDEX)) * 4, slot + 1);
+    }
+
+    /**
+     * Removes the index map entry by backward shifting of the following entries
+     * */
+    private void removeEntry(int index) {
+        int offset = mapOffset(), mask = mapMask();
+        int hole = findEntry(index);
+        int position = hole;
+        while (true) {
+            position = (position + 1) & mask;
+            int entry = buffer.getInt(offset + position * 4);
+            if (entry == 0) {
+                break;
+            }
+            int home = hash(get(entry - 1, INDEX)) & mask;
+            // entry can fill the hole if its home is not between hole (exclusive) and position (inclusive)
+            boolean movable = hole <= position ? (home <= hole || home > position) : (home <= hole && home > position);
+            if (movable) {
+                buffer.putInt(offset + hole * 4, entry);
+                hole = position;
+            }
+        }
+        buffer.putInt(offset + hole * 4, 0);
+    }
+
+    /**
+     * Doubles the capacity: records stay in place, index map is rebuilt after them
+     * */
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Tree is too large to be stored off-heap! At most " + MAX_CAPACITY
+                    + " nodes are supported");
+        }
+        int used = buffer.getInt(USED);
+        int newCapacity = capacity * 2;
+        ByteBuffer grown = allocate(newCapacity);
+        if (channel == null) {
+            grown.put(0, buffer, 0, record(used));
+        }
+        // old index map might overlap new records, it is rebuilt from the records
+        buffer = grown;
+        capacity = newCapacity;
+        buffer.putInt(CAPACITY, capacity);
+        int offset = mapOffset();
+        for (int position = 0; position <= mapMask(); position++) {
+            buffer.putInt(offset + position * 4, 0);
+        }
+        for (int slot = 0; slot < used; slot++) {
+            if (get(slot, CHILD_COUNT) != FREE_SLOT) {
+                putEntry(slot);
+            }
+        }
+    }
+
+    private int newSlot(int index, int parent) {
+        int slot = buffer.getInt(FREE);
+        if (slot != NONE) {
+            buffer.putInt(FREE, get(slot, NEXT_SIBLING));
+        } else {
+            if (buffer.getInt(USED) == capacity) {
+                grow();
+            }
+            slot = buffer.getInt(USED);
+            buffer.putInt(USED, slot + 1);
+        }
+        set(slot, INDEX, index);
+        set(slot, PARENT, parent);
+        set(slot, FIRST_CHILD, NONE);
+        set(slot, LAST_CHILD, NONE);
+        set(slot, NEXT_SIBLING, NONE);
+        set(slot, CHILD_COUNT, 0);
+        putEntry(slot);
+        buffer.putInt(SIZE, buffer.getInt(SIZE) + 1);
+        modificationCount++;
+        return slot;
+    }
+
+    private void freeSlot(int slot) {
+        removeEntry(get(slot, INDEX));
+        set(slot, CHILD_COUNT, FREE_SLOT);
+        set(slot, NEXT_SIBLING, buffer.getInt(FREE));
+        buffer.putInt(FREE, slot);
+        buffer.putInt(SIZE, buffer.getInt(SIZE) - 1);
+        modificationCount++;
+    }
+
+    private void addRootNode(int index) {
+        buffer.putInt(ROOT, newSlot(index, NONE));
+    }
+
+    /**
+     * Add node as child with childIndex to the node with parentIndex (same semantics as {@link Tree#addNode(int, int)})
+     * @param parentIndex index of the parent node
+     * @param childIndex index of the child node to be added to the parent node
+     * @throws NodeAlreadyExistsException if node with childIndex already exists in the tree
+     * @throws ParentDoesNotExistException if node with parentIndex doesn't exist in the tree
+     * */
+    public void addNode(int parentIndex, int childIndex) throws NodeAlreadyExistsException, ParentDoesNotExistException {
+        buffer();
+        if (findSlot(parentIndex) == NONE) {
+            if (!isEmpty()) {
+                throw new ParentDoesNotExistException("Cannot add node to : " + parentIndex + "! It is not present in the tree!");
+            }
+            addRootNode(parentIndex);
+        }
+        if (findSlot(childIndex) != NONE) {
+            throw new NodeAlreadyExistsException("Cannot add node: " + childIndex + "! It is already present in the tree!");
+        }
+        // slot of the parent has to be looked up after insertion of root, as buffer might grow
+        int child = newSlot(childIndex, NONE);
+        int parent = findSlot(parentIndex);
+        set(child, PARENT, parent);
+        // keep siblings sorted, children mostly come in ascending order
+        int last = get(parent, LAST_CHILD);
+        if (last == NONE || get(last, INDEX) < childIndex) {
+            if (last == NONE) {
+                set(parent, FIRST_CHILD, child);
+            } else {
+                set(last, NEXT_SIBLING, child);
+            }
+            set(parent, LAST_CHILD, child);
+        } else {
+            int previous = NONE, current = get(parent, FIRST_CHILD);
+            while (get(current, INDEX) < childIndex) {
+                previous = current;
+                current = get(current, NEXT_SIBLING);
+            }
+            set(child, NEXT_SIBLING, current);
+            if (previous == NONE) {
+                set(parent, FIRST_CHILD, child);
+            } else {
+                set(previous, NEXT_SIBLING, child);
+            }
+        }
+        set(parent, CHILD_COUNT, get(parent, CHILD_COUNT) + 1);
+        cursorSlot = NONE;
+    }
+
+    /**
+     * Removes node with the given index from the tree
+     * @param index index of node to be removed
+     * @throws NotALeafException if node with index is not a leaf or is not presented in the tree (implies the first one)
+     * */
+    public void removeNode(int index) throws NotALeafException {
+        buffer();
+        int slot = findSlot(index);
+        if (slot == NONE || get(slot, CHILD_COUNT) != 0) {
+            throw new NotALeafException("Cannot remove node: " + index + "! It is not a leaf!");
+        }
+        int parent = get(slot, PARENT);
+        if (parent == NONE) {
+            // tree becomes empty
+            buffer.putInt(ROOT, NONE);
+        } else {
+            int previous = NONE, current = get(parent, FIRST_CHILD);
+            while (current != slot) {
+                previous = current;
+                current = get(current, NEXT_SIBLING);
+            }
+            if (previous == NONE) {
+                set(parent, FIRST_CHILD, get(slot, NEXT_SIBLING));
+            } else {
+                set(previous, NEXT_SIBLING, get(slot, NEXT_SIBLING));
+            }
+            if (get(parent, LAST_CHILD) == slot) {
+                set(parent, LAST_CHILD, previous);
+            }
+            set(parent, CHILD_COUNT, get(parent, CHILD_COUNT) - 1);
+        }
+        freeSlot(slot);
+        cursorSlot = NONE;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return buffer().getInt(ROOT) == NONE;
+    }
+
+    @Override
+    public int getRootIndex() {
+        int root = buffer().getInt(ROOT);
+        if (root == NONE) {
+            throw new IllegalStateException("Tree is empty!");
+        }
+        return get(root, INDEX);
+    }
+
+    @Override
+    public int size() {
+        return buffer().getInt(SIZE);
+    }
+
+    @Override
+    public boolean containsNode(int index) {
+        buffer();
+        return findSlot(index) != NONE;
+    }
+
+    @Override
+    public int getChildCount(int index) {
+        buffer();
+        return get(getExistingSlot(index), CHILD_COUNT);
+    }
+
+    @Override
+    public int getChild(int index, int position) {
+        buffer();
+        int slot = getExistingSlot(index);
+        if (position < 0 || position >= get(slot, CHILD_COUNT)) {
+            throw new IndexOutOfBoundsException("Node " + index + " has no child at position " + position);
+        }
+        int child, current;
+        if (slot == cursorSlot && position >= cursorPosition) {
+            // continue from the previous call
+            child = cursorChild;
+            current = cursorPosition;
+        } else {
+            child = get(slot, FIRST_CHILD);
+            current = 0;
+        }
+        for (; current < position; current++) {
+            child = get(child, NEXT_SIBLING);
+        }
+        cursorSlot = slot;
+        cursorPosition = position;
+        cursorChild = child;
+        return get(child, INDEX);
+    }
+
+    @Override
+    public long getModificationCount() {
+        buffer();
+        return modificationCount;
+    }
+
+    /**
+     * Closes the tree (flushing a memory-mapped file to the disk first), any later access fails
+     * with an {@link IllegalStateException}.
+     * Java has no public way to free direct memory or to unmap a file, so the buffer is only dropped here and
+     * released when it is garbage collected: until then direct memory counts against -XX:MaxDirectMemorySize
+     * (allocating beyond it triggers a collection first) and a file stays mapped (e.g. cannot be deleted on Windows).
+     * @throws IOException if file operations failed
+     * */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        if (buffer instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) buffer).force();
+        }
+        buffer = null;
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package main.java;
+
+/**
+ * Exact number of instructions in the transformation sequence between two trees,
+ * computed without building the sequence (see {@link TreeTransformer#estimateTransformations(TreeView, TreeView)})
+ */
+public class TransformationEstimate {
+    private final int removeCount;
+    private final int addCount;
+
+    public TransformationEstimate(int removeCount, int addCount) {
+        this.removeCount = removeCount;
+        this.addCount = addCount;
+    }
+
+    /**
+     * @return number of Remove instructions
+     * */
+    public int getRemoveCount() {
+        return removeCount;
+    }
+
+    /**
+     * @return number of Add instructions
+     * */
+    public int getAddCount() {
+        return addCount;
+    }
+
+    /**
+     * @return number of all the instructions
+     * */
+    public int getTotalCount() {
+        return removeCount + addCount;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TransformationEstimate that = (TransformationEstimate) o;
+        return removeCount == that.removeCount && addCount == that.addCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * removeCount + addCount;
+    }
+
+    @Override
+    public String toString() {
+        return "Remove: " + removeCount + ", Add: " + addCount;
+    }
+}
@@ -1,31 +1,38 @@
 package main.java;
 
 import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NodeDoesNotExistException;
 import main.java.exceptions.NotALeafException;
+import main.java.exceptions.OperationCancelledException;
 import main.java.exceptions.ParentDoesNotExistException;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.SecureRandom;
 import java.util.*;
 import java.util.regex.MatchResult;
 import java.util.regex.Pattern;
 
-public class Tree {
+public class Tree implements TreeView {
     public static class Node {
         private final int index;
-        private final Node parent;
-        private final HashSet<Node> children;
-        private final HashSet<Integer> childrenIndexes;
+        private Node parent; // changes only when a subtree is grafted
+        private final ArrayList<Node> children; // sorted by index, allows merge-joins of children
+        private int subtreeSize = 1; // number of nodes in the subtree of this node (including itself)
+        private long subtreeHash; // sum of the edge hashes of the subtree (see getEdgeHash)
 
         public Node(int index, Node parent) {
             this.index = index;
             this.parent = parent;
-            children = new HashSet<>();
-            childrenIndexes = new HashSet<>();
+            children = new ArrayList<>();
+            subtreeHash = getEdgeHash(index, parent);
         }
 
-        public HashSet<Node> getChildren() {
+        /**
+         * @return children of this node in ascending order of their indexes (must not be modified)
+         * */
+        public List<Node> getChildren() {
             return children;
         }
 
@@ -33,6 +40,27 @@ public class Tree {
             return index;
         }
 
+        /**
+         * @return parent of this node, null for the root
+         * */
+        public Node getParent() {
+            return parent;
+        }
+
+        /**
+         * @return number of nodes in the subtree of this node (including the node itself)
+         * */
+        public int getSubtreeSize() {
+            return subtreeSize;
+        }
+
+        /**
+         * @return hash of the subtree of this node (see {@link Tree#getSubtreeHash(int)})
+         * */
+        public long getSubtreeHash() {
+            return subtreeHash;
+        }
+
         /**
          * Removes node from children
          * @param child node to be removed
@@ -42,8 +70,36 @@ public class Tree {
             if (!child.children.isEmpty()) {
                 throw new NotALeafException("Cannot remove node: " + index + "! It still has children");
             }
-            children.remove(child);
-            childrenIndexes.remove(child.index);
+            int position = findChild(child.index);
+            if (position >= 0) {
+                children.remove(position);
+            }
+        }
+
+        /**
+         * Binary search of the child with index
+         * @param index index of the child
+         * @return position of the child, (-(insertion point) - 1) if there is no such child
+         * */
+        int findChild(int index) {
+            int size = children.size();
+            // children are mostly added in ascending order
+            if (size == 0 || children.get(size - 1).index < index) {
+                return -size - 1;
+            }
+            int low = 0, high = size - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middleIndex = children.get(middle).index;
+                if (middleIndex < index) {
+                    low = middle + 1;
+                } else if (middleIndex > index) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -low - 1;
         }
 
         /**
@@ -53,29 +109,161 @@ public class Tree {
          * @throws NodeAlreadyExistsException if child with this index already exists
          * */
         public Node addChild(int index) throws NodeAlreadyExistsException {
-            if (childrenIndexes.contains(index))
+            int position = findChild(index);
+            if (position >= 0)
                 throw new NodeAlreadyExistsException("Child with this index already exists!");
             Node child = new  Node(index, this);
-            children.add(child);
-            childrenIndexes.add(index);
+            children.add(-position - 1, child);
             return child;
         }
     }
     public static String EXTENSION = ".tt";
+    private static final String LABEL_PREFIX = "@";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    // random per process, subtree hashes are only compared within the process (see getSubtreeHash)
+    private static final long EDGE_HASH_KEY = new SecureRandom().nextLong();
 
     private Node root;
     private final HashMap<Integer, Node> leaves; // store for O(1) deletion
-    private final HashSet<Integer> takenIndexes; // ensures that we don't have nodes with same index
+    private final HashMap<Integer, Node> nodes; // O(1) lookup, ensures that we don't have nodes with same index
+    private Node lastNode; // last node looked up through TreeView, consecutive lookups mostly hit the same node
+    private long modificationCount;
+    private TreePublisher publisher; // null unless mutations are observed, so that plain trees pay nothing
 
     public Tree() {
         leaves = new HashMap<>();
-        takenIndexes = new HashSet<>();
+        nodes = new HashMap<>();
     }
 
     public Node getRoot() {
         return root;
     }
 
+    @Override
+    public boolean isEmpty() {
+        return root == null;
+    }
+
+    @Override
+    public int getRootIndex() {
+        if (root == null) {
+            throw new IllegalStateException("Tree is empty!");
+        }
+        return root.index;
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public boolean containsNode(int index) {
+        return nodes.containsKey(index);
+    }
+
+    @Override
+    public int getChildCount(int index) {
+        return getExistingNode(index).children.size();
+    }
+
+    @Override
+    public int getChild(int index, int position) {
+        return getExistingNode(index).children.get(position).index;
+    }
+
+    @Override
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Returns number of nodes in the subtree in O(1), sizes are maintained on every modification
+     * */
+    @Override
+    public int getSubtreeSize(int index) {
+        return getExistingNode(index).subtreeSize;
+    }
+
+    /**
+     * Returns hash of the subtree in O(1), hashes are maintained on every modification together with the sizes.
+     * Hash of a subtree is the sum of the hashes of all its edges (parent, child) including the edge from the parent
+     * of the subtree root, so equal subtrees of nodes with the same index and the same parent in two trees have
+     * equal hashes. The converse only holds with high probability: different subtrees have equal hashes by
+     * a collision, and comparisons that skip subtrees with equal hashes (see {@link TreeMerger}) then give a wrong
+     * result. Edge hashes are keyed with a random key chosen per process, so collisions cannot be prepared
+     * in advance in edge lists (hashes are never stored, they are recomputed when a tree is read).
+     * @param index index of the node
+     * @return hash of the subtree of the node
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    public long getSubtreeHash(int index) {
+        return getExistingNode(index).subtreeHash;
+    }
+
+    /**
+     * Returns a well mixed hash of the edge keyed with {@link #EDGE_HASH_KEY}, sums of such hashes do not cancel out
+     * for different sets of edges (unless they collide by chance).
+     * Root is treated as its own parent, no other node can have such an edge.
+     * */
+    private static long getEdgeHash(int index, Node parent) {
+        long hash = (((long) index << 32) | ((parent == null ? index : parent.index) & 0xFFFFFFFFL)) ^ EDGE_HASH_KEY;
+        // finalizer of MurmurHash3
+        hash = (hash ^ (hash >>> 33)) * 0xFF51AFD7ED558CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Adds deltas to the subtree sizes and hashes of the node and all of its ancestors
+     * */
+    private static void updateSubtreeSizes(Node node, int delta, long hashDelta) {
+        for (; node != null; node = node.parent) {
+            node.subtreeSize += delta;
+            node.subtreeHash += hashDelta;
+        }
+    }
+
+    /**
+     * Computes subtree sizes and hashes of all the nodes bottom-up in O(n)
+     * Used after bulk building, where maintaining sizes on every insertion would cost O(depth) per node.
+     * */
+    void computeSubtreeSizes() {
+        if (root == null) {
+            return;
+        }
+        ArrayList<Node> order = new ArrayList<>(nodes.size());
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) {
+            order.addAll(order.get(i).children);
+        }
+        for (int i = order.size() - 1; i >= 0; i--) {
+            Node node = order.get(i);
+            node.subtreeSize = 1;
+            node.subtreeHash = getEdgeHash(node.index, node.parent);
+            for (Node child : node.children) {
+                node.subtreeSize += child.subtreeSize;
+                node.subtreeHash += child.subtreeHash;
+            }
+        }
+    }
+
+    /**
+     * Returns a node with index from the tree
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    private Node getExistingNode(int index) {
+        Node node = lastNode;
+        if (node == null || node.index != index) {
+            node = nodes.get(index);
+            if (node == null) {
+                throw new IllegalArgumentException("Node " + index + " is not present in the tree!");
+            }
+            lastNode = node;
+        }
+        return node;
+    }
+
     /**
      * Removes node with the given index from the tree
      * @param index index of node to be removed
@@ -95,31 +283,24 @@ public class Tree {
             if (parent.children.isEmpty()) {
                 leaves.put(parent.getIndex(), parent);
             }
+            updateSubtreeSizes(parent, -1, -n.subtreeHash);
         }
-        takenIndexes.remove(index);
+        nodes.remove(index);
         leaves.remove(index);
+        lastNode = null;
+        modificationCount++;
+        if (publisher != null) {
+            publisher.publish(TreeEvent.Type.REMOVE, parent == null ? -1 : parent.index, index, modificationCount);
+        }
     }
 
     /**
      * Returns a node with index from the tree
-     * @param index index of node to be deleted
+     * @param index index of node to be returned
      * @return node with index, {@link null} if node with this index is not present in the tree
      * */
     public Node getNode(int index) {
-        if (root == null)
-            return null;
-        Node current;
-        Queue<Node> queue = new ArrayDeque<>();
-        queue.add(root);
-        current = queue.poll();
-        while (current != null) {
-            if (current.index == index) {
-                return current;
-            }
-            queue.addAll(current.children);
-            current = queue.poll();
-        }
-        return null;
+        return nodes.get(index);
     }
 
     /**
@@ -127,12 +308,13 @@ public class Tree {
      * @param index index of node to be added as root
      * @return true if root was added, false if it already existed
      * */
-    private boolean addRootNode(int index) {
+    boolean addRootNode(int index) {
         if (root != null) {
             return false;
         }
         root = new Node(index, null);
-        takenIndexes.add(index);
+        nodes.put(index, root);
+        modificationCount++;
         leaves.put(index, root);
         return true;
     }
@@ -146,26 +328,185 @@ public class Tree {
      * @throws ParentDoesNotExistException if node with parentIndex doesn't exist in the tree
      * */
     public Node addNode(int parentIndex, int childIndex) throws NodeAlreadyExistsException, ParentDoesNotExistException {
-        if (!takenIndexes.contains(parentIndex) && !addRootNode(parentIndex)) {
+        Node child = insertNode(parentIndex, childIndex);
+        updateSubtreeSizes(child.parent, 1, child.subtreeHash);
+        if (publisher != null) {
+            publisher.publish(TreeEvent.Type.ADD, parentIndex, childIndex, modificationCount);
+        }
+        return child;
+    }
+
+    /**
+     * Same as {@link #addNode(int, int)}, but subtree sizes are not updated,
+     * {@link #computeSubtreeSizes()} has to be called after the bulk insertion
+     * */
+    Node insertNode(int parentIndex, int childIndex) throws NodeAlreadyExistsException, ParentDoesNotExistException {
+        if (!nodes.containsKey(parentIndex) && !addRootNode(parentIndex)) {
             throw new ParentDoesNotExistException("Cannot add node to : " + parentIndex + "! It is not present in the tree!");
-        } else if (takenIndexes.contains(childIndex)) {
+        } else if (nodes.containsKey(childIndex)) {
             throw new NodeAlreadyExistsException("Cannot add node: " + childIndex + "! It is already present in the tree!");
         }
 
         Node parent = getNode(parentIndex);
-        if (parent == null) {
-            takenIndexes.remove(parentIndex);
-            // should not happen due to previous check
-            throw new RuntimeException("Cannot add node to : " + parentIndex + "! It is not present in the tree!");
-        }
         Node child = parent.addChild(childIndex);
         leaves.put(childIndex, child);
-        takenIndexes.add(childIndex);
+        nodes.put(childIndex, child);
+        modificationCount++;
         // if parent was a leaf, it should be removed from there
         leaves.remove(parentIndex);
         return child;
     }
 
+    /**
+     * Copies any tree into a new Tree
+     * @param tree tree to be copied
+     * @return copy of the tree
+     * */
+    public static Tree copyOf(TreeView tree) {
+        Tree result = new Tree();
+        if (tree.isEmpty()) {
+            return result;
+        }
+        result.addRootNode(tree.getRootIndex());
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(tree.getRootIndex());
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int childCount = tree.getChildCount(current);
+            for (int i = 0; i < childCount; i++) {
+                int child = tree.getChild(current, i);
+                result.insertNode(current, child);
+                queue.add(child);
+            }
+        }
+        result.computeSubtreeSizes();
+        return result;
+    }
+
+    /**
+     * Removes the whole subtree of the node with the given index (including the node itself) at once
+     * @param index index of the subtree root
+     * @throws NodeDoesNotExistException if node with index is not present in the tree
+     * */
+    public void removeSubtree(int index) throws NodeDoesNotExistException {
+        Node subtreeRoot = nodes.get(index);
+        if (subtreeRoot == null) {
+            throw new NodeDoesNotExistException("Cannot remove subtree: " + index + "! It is not present in the tree!");
+        }
+        Node parent = subtreeRoot.parent;
+        if (parent == null) {
+            // tree becomes empty
+            root = null;
+            nodes.clear();
+            leaves.clear();
+        } else {
+            parent.children.remove(parent.findChild(index));
+            if (parent.children.isEmpty()) {
+                leaves.put(parent.index, parent);
+            }
+            updateSubtreeSizes(parent, -subtreeRoot.subtreeSize, -subtreeRoot.subtreeHash);
+            ArrayDeque<Node> queue = new ArrayDeque<>();
+            queue.add(subtreeRoot);
+            while (!queue.isEmpty()) {
+                Node current = queue.poll();
+                nodes.remove(current.index);
+                if (current.children.isEmpty()) {
+                    leaves.remove(current.index);
+                } else {
+                    queue.addAll(current.children);
+                }
+            }
+        }
+        lastNode = null;
+        modificationCount++;
+        if (publisher != null) {
+            publisher.publish(TreeEvent.Type.REMOVE_SUBTREE, parent == null ? -1 : parent.index, index, modificationCount);
+        }
+    }
+
+    /**
+     * Attaches the whole subtree as a child of the node with parentIndex at once.
+     * Nodes of the subtree are moved (not copied), so subtree becomes empty afterwards.
+     * Same as {@link #addNode(int, int)}, parent becomes the root if this tree is empty.
+     * @param parentIndex index of the node the subtree will be attached to
+     * @param subtree tree to be attached (empty tree is ignored)
+     * @throws NodeAlreadyExistsException if some node of the subtree already exists in the tree (nothing is attached)
+     * @throws ParentDoesNotExistException if node with parentIndex doesn't exist in the tree
+     * */
+    public void graftSubtree(int parentIndex, Tree subtree) throws NodeAlreadyExistsException, ParentDoesNotExistException {
+        if (subtree == this) {
+            throw new IllegalArgumentException("Cannot graft tree onto itself!");
+        }
+        if (subtree.root == null) {
+            return;
+        }
+        if (!nodes.containsKey(parentIndex) && root != null) {
+            throw new ParentDoesNotExistException("Cannot add subtree to : " + parentIndex + "! It is not present in the tree!");
+        }
+        if (subtree.nodes.containsKey(parentIndex)) {
+            throw new NodeAlreadyExistsException("Cannot add node: " + parentIndex + "! It is already present in the tree!");
+        }
+        for (Integer index : subtree.nodes.keySet()) {
+            if (nodes.containsKey(index)) {
+                throw new NodeAlreadyExistsException("Cannot add node: " + index + "! It is already present in the tree!");
+            }
+        }
+        addRootNode(parentIndex);
+        Node parent = nodes.get(parentIndex);
+        Node subtreeRoot = subtree.root;
+        parent.children.add(-parent.findChild(subtreeRoot.index) - 1, subtreeRoot);
+        // edge from the new parent replaces the root edge in the hash
+        subtreeRoot.subtreeHash += getEdgeHash(subtreeRoot.index, parent) - getEdgeHash(subtreeRoot.index, null);
+        subtreeRoot.parent = parent;
+        updateSubtreeSizes(parent, subtreeRoot.subtreeSize, subtreeRoot.subtreeHash);
+        nodes.putAll(subtree.nodes);
+        leaves.putAll(subtree.leaves);
+        leaves.remove(parentIndex);
+        lastNode = null;
+        modificationCount++;
+        if (publisher != null) {
+            publishSubtree(parent, subtreeRoot);
+        }
+
+        subtree.root = null;
+        subtree.nodes.clear();
+        subtree.leaves.clear();
+        subtree.lastNode = null;
+        subtree.modificationCount++;
+    }
+
+    /**
+     * Publishes additions of all the nodes of the grafted subtree top-down, so that every parent precedes its children
+     * */
+    private void publishSubtree(Node parent, Node subtreeRoot) {
+        publisher.publish(TreeEvent.Type.ADD, parent.index, subtreeRoot.index, modificationCount);
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(subtreeRoot);
+        while (!queue.isEmpty()) {
+            Node current = queue.poll();
+            for (Node child : current.children) {
+                publisher.publish(TreeEvent.Type.ADD, current.index, child.index, modificationCount);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Attaches publisher the mutations of this tree are published to
+     * Only public mutations (addNode, removeNode, removeSubtree, graftSubtree) are published.
+     * @param publisher publisher of the mutations, null to stop publishing
+     * */
+    public void setPublisher(TreePublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * @return publisher the mutations of this tree are published to, null if there is none
+     * */
+    public TreePublisher getPublisher() {
+        return publisher;
+    }
+
     /**
      * Returns post order representation of the tree (postOrder(child1), postOrder(child2), ..., postOrder(childN)), parent
      * @return list of tree indexes in post order
@@ -181,6 +522,31 @@ public class Tree {
         return result;
     }
 
+    /**
+     * Returns post order representation of the subtree of any {@link TreeView}
+     * (postOrder(child1), postOrder(child2), ..., postOrder(childN)), parent
+     * Traversal is iterative, so it is safe for arbitrarily deep trees.
+     * @param tree tree to be traversed
+     * @param root index of the subtree root
+     * @return list of subtree indexes in post order
+     * */
+    public static List<Integer> getPostOrder(TreeView tree, int root) {
+        List<Integer> result = new ArrayList<>();
+        // stack of (node, position of the next child to be visited)
+        ArrayDeque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{root, 0});
+        while (!stack.isEmpty()) {
+            int[] top = stack.peek();
+            if (top[1] < tree.getChildCount(top[0])) {
+                stack.push(new int[]{tree.getChild(top[0], top[1]++), 0});
+            } else {
+                result.add(top[0]);
+                stack.pop();
+            }
+        }
+        return result;
+    }
+
     /**
      * Helper function for the recursive post order representation
      * */
@@ -219,6 +585,11 @@ public class Tree {
      * @throws NodeAlreadyExistsException if a child with same index is defined by multiple parents
      * */
     public static Tree buildTree(int root, HashMap<Integer, HashSet<Integer>> treeDefinition) throws NodeAlreadyExistsException{
+        return buildTree(root, treeDefinition, new CancellationToken.Progress(null, -1));
+    }
+
+    private static Tree buildTree(int root, HashMap<Integer, HashSet<Integer>> treeDefinition,
+                                  CancellationToken.Progress progress) throws NodeAlreadyExistsException {
         Tree tree = new Tree();
         Queue<Integer> queue = new ArrayDeque<>();
         queue.add(root);
@@ -230,13 +601,15 @@ public class Tree {
             }
             for (Integer child : treeDefinition.get(current)) {
                 try {
-                    tree.addNode(current, child);
+                    tree.insertNode(current, child);
                 } catch (ParentDoesNotExistException ignored) {
                     // not possible as all the parents come from queue from previous nodes
                 }
                 queue.add(child);
+                progress.step();
             }
         }
+        tree.computeSubtreeSizes();
         return tree;
     }
 
@@ -254,6 +627,87 @@ public class Tree {
                 .toArray(String[]::new);
     }
 
+    /**
+     * Returns edges from the reader one by one in form of strings like "1, 2", "1, 3", ...
+     * Reader is consumed lazily, so the whole tree description is never held in memory.
+     * Line breaks are ignored, every other character outside of [] makes the format invalid.
+     * @param reader reader with edge definition
+     * @return iterator over edges in form of strings like "1, 2", "1, 3", ...
+     * @throws IllegalArgumentException (on iteration) if tree description format was invalid
+     * @throws UncheckedIOException (on iteration) if reading failed
+     * */
+    public static Iterator<String> getEdges(Reader reader) {
+        return new EdgeIterator(reader);
+    }
+
+    /**
+     * Lazy tokenizer of [parent, child] edges, see {@link #getEdges(Reader)}
+     * */
+    private static class EdgeIterator implements Iterator<String> {
+        private final Reader reader;
+        private final StringBuilder edge = new StringBuilder();
+        private String next;
+        private boolean finished;
+
+        EdgeIterator(Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                next = readEdge();
+                finished = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            String result = next;
+            next = null;
+            return result;
+        }
+
+        /**
+         * Reads next edge from the reader
+         * @return content of the next [] pair (trimmed), null if reader is exhausted
+         * */
+        private String readEdge() {
+            try {
+                boolean opened = false;
+                int c;
+                while ((c = reader.read()) != -1) {
+                    if (c == '\n' || c == '\r') {
+                        continue;
+                    }
+                    if (!opened) {
+                        if (c != '[') {
+                            throw new IllegalArgumentException("Incorrect tree structure provided!");
+                        }
+                        opened = true;
+                        edge.setLength(0);
+                    } else if (c == ']') {
+                        return edge.toString().trim();
+                    } else if (c == '[') {
+                        throw new IllegalArgumentException("Incorrect tree structure provided!");
+                    } else {
+                        edge.append((char) c);
+                    }
+                }
+                if (opened) {
+                    throw new IllegalArgumentException("Incorrect tree structure provided!");
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     /**
      * Fills treeDefinition with according information.
      * After execution the structure will have the following information:
@@ -263,51 +717,74 @@ public class Tree {
      * @throws IllegalArgumentException if incorrect tree structure was provided i.e.:
      * tree description format was invalid, tree had cycles, tree was not connected (multiple different root nodes)
      * @throws NumberFormatException if some nodes index was not integer
+     * @throws NodeAlreadyExistsException if some node was defined as a child of several parents
+     * (see {@link EdgeListValidator})
      * */
     public static Integer buildTreeDefinition(HashMap<Integer, HashSet<Integer>> treeDefinition, String[] edges) {
-        HashSet<Integer> childrenIndexes = new HashSet<>();
-        HashSet<Integer> rootCandidates = new HashSet<>();
-        for (String edge : edges) {
+        return buildTreeDefinition(treeDefinition, Arrays.asList(edges).iterator());
+    }
+
+    /**
+     * Same as {@link #buildTreeDefinition(HashMap, String[])}, but consumes edges lazily
+     * @param treeDefinition empty HashMap<Integer, HashSet<Integer>> for data to be stored into
+     * @param edges iterator over edges like "1, 2"
+     * @return index of a root node
+     * */
+    public static Integer buildTreeDefinition(HashMap<Integer, HashSet<Integer>> treeDefinition, Iterator<String> edges) {
+        return buildTreeDefinition(treeDefinition, edges, null, new CancellationToken.Progress(null, -1));
+    }
+
+    /**
+     * Same as {@link #buildTreeDefinition(HashMap, Iterator)}, but node labels are encoded with the dictionary
+     * @param treeDefinition empty HashMap<Integer, HashSet<Integer>> for data to be stored into
+     * @param edges iterator over edges like "a, b"
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @param progress counter of parsed edges
+     * @return index of a root node
+     * */
+    private static Integer buildTreeDefinition(HashMap<Integer, HashSet<Integer>> treeDefinition, Iterator<String> edges,
+                                               NodeDictionary dictionary, CancellationToken.Progress progress) {
+        // edges are collected into primitive arrays and validated in a single pass before anything is built
+        int[] parents = new int[16], children = new int[16];
+        int count = 0;
+        while (edges.hasNext()) {
+            String edge = edges.next();
             // splits "1, 2" into "1", "2"
-            String[] elements = edge.replaceAll(" ", "").split(",");
+            String[] elements = dictionary == null ? edge.replaceAll(" ", "").split(",") : edge.split(",");
             if (elements.length != 2) {
                 throw new IllegalArgumentException("Incorrect tree structure provided! Edge [" + edge + "] is invalid!");
             }
-            int parent, child;
-            try {
-                parent = Integer.parseInt(elements[0]);
-            } catch (NumberFormatException e) {
-                throw new NumberFormatException("Invalid parent index provided for edge [" + edge + "]");
-            }
-            try {
-                child = Integer.parseInt(elements[1]);
-            } catch (NumberFormatException e) {
-                throw new NumberFormatException("Invalid child index provided for edge [" + edge + "]");
+            if (count == parents.length) {
+                parents = Arrays.copyOf(parents, count * 2);
+                children = Arrays.copyOf(children, count * 2);
             }
-
-            // check for cycles
-            if (treeDefinition.containsKey(child) && treeDefinition.get(child).contains(parent)) {
-                throw new IllegalArgumentException("Incorrect tree structure provided! Edge [" + edge + "] introduces a cycle!");
-            }
-            if (!treeDefinition.containsKey(parent)) {
-                treeDefinition.put(parent, new HashSet<>());
-            }
-            treeDefinition.get(parent).add(child);
-
-            // updating root candidates
-            if (!childrenIndexes.contains(parent)) {
-                rootCandidates.add(parent);
+            if (dictionary != null) {
+                try {
+                    parents[count] = dictionary.encode(elements[0].trim());
+                    children[count] = dictionary.encode(elements[1].trim());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Incorrect tree structure provided! Edge [" + edge + "] is invalid!");
+                }
+            } else {
+                try {
+                    parents[count] = Integer.parseInt(elements[0]);
+                } catch (NumberFormatException e) {
+                    throw new NumberFormatException("Invalid parent index provided for edge [" + edge + "]");
+                }
+                try {
+                    children[count] = Integer.parseInt(elements[1]);
+                } catch (NumberFormatException e) {
+                    throw new NumberFormatException("Invalid child index provided for edge [" + edge + "]");
+                }
             }
-            rootCandidates.remove(child); // if node is a child of any other node - it cannot be the root
-            childrenIndexes.add(child);
+            count++;
+            progress.step();
         }
-        if (rootCandidates.isEmpty()) {
-            throw new IllegalArgumentException("Incorrect tree structure provided! No root can be selected");
-        } else if (rootCandidates.size() > 1) {
-            throw new IllegalArgumentException("Incorrect tree structure provided! main.java.Tree is not connected and multiple roots" +
-                    "exist!\n" + Arrays.toString(rootCandidates.toArray()));
+        int root = EdgeListValidator.validate(parents, children, count);
+        for (int i = 0; i < count; i++) {
+            treeDefinition.computeIfAbsent(parents[i], (k) -> new HashSet<>()).add(children[i]);
         }
-        return (Integer) rootCandidates.toArray()[0];
+        return root;
     }
 
     /**
@@ -320,17 +797,89 @@ public class Tree {
      * @throws NodeAlreadyExistsException if some node with same index was added several times to different parents
      * */
     public static Tree getTreeFromString(String s) throws IllegalArgumentException, NodeAlreadyExistsException {
+        return getTreeFromString(s, null);
+    }
+
+    /**
+     * Transforms a string tree description with arbitrary node labels (e.g. [root, a/b][a/b, 4294967296])
+     * into a Tree instance, labels are encoded into node indexes with the dictionary
+     * @param s String with tree description
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @return Tree if description was correct (never null)
+     * @throws IllegalArgumentException if incorrect tree structure was provided (see {@link #getTreeFromString(String)})
+     * @throws NodeAlreadyExistsException if some node with same label was added several times to different parents
+     * */
+    public static Tree getTreeFromString(String s, NodeDictionary dictionary) throws IllegalArgumentException, NodeAlreadyExistsException {
         if (s == null || s.equals("")) {
             return new Tree();
         } else if (!checkCorrectFormat(s)) {
             throw new IllegalArgumentException("Incorrect tree structure provided!");
         }
-        String[] edges = getEdges(s);
+        return buildTree(Arrays.asList(getEdges(s)).iterator(), dictionary, null);
+    }
+
+    /**
+     * Transforms a tree description streamed from the reader into a Tree instance if it's described correctly
+     * @param reader reader with tree description
+     * @return Tree if description was correct (never null)
+     * @throws IllegalArgumentException if incorrect tree structure was provided i.e.:
+     * tree description format was invalid, tree had cycles, tree was not connected (multiple different root nodes)
+     * @throws NumberFormatException if some nodes index was not integer
+     * @throws NodeAlreadyExistsException if some node with same index was added several times to different parents
+     * @throws UncheckedIOException if reading failed
+     * */
+    public static Tree getTreeFromReader(Reader reader) throws IllegalArgumentException, NodeAlreadyExistsException {
+        return getTreeFromReader(reader, null);
+    }
+
+    /**
+     * Same as {@link #getTreeFromReader(Reader)}, but node labels are encoded with the dictionary
+     * @param reader reader with tree description
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @return Tree if description was correct (never null)
+     * */
+    public static Tree getTreeFromReader(Reader reader, NodeDictionary dictionary) throws IllegalArgumentException, NodeAlreadyExistsException {
+        return getTreeFromReader(reader, dictionary, null);
+    }
+
+    /**
+     * Same as {@link #getTreeFromReader(Reader, NodeDictionary)}, but parsing can be stopped with the token
+     * Progress is reported in parsed edges (total is unknown) and then in built nodes.
+     * @param reader reader with tree description
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @param token token to stop parsing with, null if parsing cannot be stopped
+     * @return Tree if description was correct (never null)
+     * @throws OperationCancelledException if token was cancelled or its time budget ran out
+     * */
+    public static Tree getTreeFromReader(Reader reader, NodeDictionary dictionary, CancellationToken token)
+            throws IllegalArgumentException, NodeAlreadyExistsException {
+        Iterator<String> edges = getEdges(reader);
+        if (!edges.hasNext()) {
+            return new Tree();
+        }
+        return buildTree(edges, dictionary, token);
+    }
+
+    /**
+     * Builds a tree from the edges
+     * @param edges edges like "1, 2"
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @param token token to stop building with, null if building cannot be stopped
+     * @return Tree built from edges
+     * */
+    private static Tree buildTree(Iterator<String> edges, NodeDictionary dictionary, CancellationToken token)
+            throws NodeAlreadyExistsException {
         HashMap<Integer, HashSet<Integer>> treeDefinition = new HashMap<>();
-        int treeRoot = buildTreeDefinition(treeDefinition, edges);
+        CancellationToken.Progress parsed = new CancellationToken.Progress(token, -1);
+        parsed.start();
+        int treeRoot = buildTreeDefinition(treeDefinition, edges, dictionary, parsed);
         Tree tree;
         try {
-            tree = buildTree(treeRoot, treeDefinition);
+            long nodeCount = 1 + treeDefinition.values().stream().mapToLong(Set::size).sum();
+            CancellationToken.Progress built = new CancellationToken.Progress(token, nodeCount);
+            tree = buildTree(treeRoot, treeDefinition, built);
+            built.step();
+            built.finish();
         } catch (NodeAlreadyExistsException e) {
             // if multiple nodes introduced with the same index
             throw new NodeAlreadyExistsException("Tree building failed! " + e.getMessage());
@@ -347,47 +896,166 @@ public class Tree {
      * @param tree tree to build a string for
      * @return string representation of a tree for it's serialization
      * */
-    public static String getTreeData(Tree tree) {
-        if (tree.root == null) {
-            return "";
-        }
+    public static String getTreeData(TreeView tree) {
         StringBuilder sb = new StringBuilder();
-        sb.append(tree.getRoot().index).append("\n");
-        Queue<Node> queue = new ArrayDeque<>();
-        queue.add(tree.getRoot());
-        Node current;
+        try {
+            writeTreeData(tree, sb);
+        } catch (IOException ignored) {
+            // StringBuilder does not throw
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds a tree from its serialization data (see {@link #getTreeData(TreeView)})
+     * @param data serialization data of the tree
+     * @return tree described by the data
+     * @throws NumberFormatException if some node index was incorrectly provided
+     * @throws NodeAlreadyExistsException if some node index was provided by two different parents
+     * */
+    public static Tree getTreeFromData(String data) throws NodeAlreadyExistsException {
+        try {
+            return deserializeTree(new BufferedReader(new StringReader(data)), null);
+        } catch (IOException e) {
+            // StringReader does not throw
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes serialization data of the tree (see {@link #getTreeData(TreeView)}) into out
+     * @param tree tree to be written
+     * @param out destination of the data
+     * @throws IOException if writing failed
+     * */
+    public static void writeTreeData(TreeView tree, Appendable out) throws IOException {
+        writeTreeData(tree, out, new CancellationToken.Progress(null, -1));
+    }
+
+    private static void writeTreeData(TreeView tree, Appendable out, CancellationToken.Progress progress) throws IOException {
+        if (tree.isEmpty()) {
+            return;
+        }
+        out.append(String.valueOf(tree.getRootIndex())).append("\n");
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(tree.getRootIndex());
         while (!queue.isEmpty()) {
-            current = queue.poll();
-            if (current.children.isEmpty())
+            int current = queue.poll();
+            int childCount = tree.getChildCount(current);
+            if (childCount == 0)
                 continue;
-            sb.append(current.getIndex()).append(":");
-            for (Node child : current.getChildren()) {
-                sb.append(child.getIndex()).append(",");
+            out.append(String.valueOf(current)).append(":");
+            for (int i = 0; i < childCount; i++) {
+                int child = tree.getChild(current, i);
+                out.append(String.valueOf(child)).append(",");
                 queue.add(child);
+                progress.step();
             }
-            sb.append("\n");
+            out.append("\n");
         }
-        return sb.toString();
+    }
+
+    /**
+     * Returns true if path has a supported serialization extension (".tt" or ".tt.gz")
+     * */
+    private static boolean hasSerializationExtension(String path) {
+        return TreeFiles.stripCompression(path).endsWith(EXTENSION);
     }
 
     /**
      * Serialize this tree onto the path provided
-     * @param path path for tree to be serialized to (MUST end with ".tt")
+     * @param path path for tree to be serialized to (MUST end with ".tt" or ".tt.gz" for a compressed file)
      * @throws IllegalArgumentException if path was provided with incorrect extension
      * @throws IOException if file operations raised an error
      * */
     public void serializeTree(String path) throws IOException {
-        if (!path.endsWith(EXTENSION)) {
+        serializeTree(this, path);
+    }
+
+    /**
+     * Serialize any tree onto the path provided (see {@link #serializeTree(String)})
+     * @param tree tree to be serialized
+     * @param path path for tree to be serialized to (MUST end with ".tt" or ".tt.gz" for a compressed file)
+     * @throws IllegalArgumentException if path was provided with incorrect extension
+     * @throws IOException if file operations raised an error
+     * */
+    public static void serializeTree(TreeView tree, String path) throws IOException {
+        serializeTree(tree, null, path);
+    }
+
+    /**
+     * Serialize any tree with labelled nodes onto the path provided (see {@link #serializeTree(String)})
+     * Labels of all the nodes are saved before the tree data, one per line:
+     *      @<index> <label>
+     * @param tree tree to be serialized
+     * @param dictionary dictionary node labels are encoded with, null if nodes have no labels
+     * @param path path for tree to be serialized to (MUST end with ".tt" or ".tt.gz" for a compressed file)
+     * @throws IllegalArgumentException if path was provided with incorrect extension or some node has no label
+     * @throws IOException if file operations raised an error
+     * */
+    public static void serializeTree(TreeView tree, NodeDictionary dictionary, String path) throws IOException {
+        serializeTree(tree, dictionary, path, null);
+    }
+
+    /**
+     * Same as {@link #serializeTree(TreeView, NodeDictionary, String)}, but serialization can be stopped with the token
+     * Tree is written into a temporary file next to the path first, which then atomically replaces the file,
+     * so an existing file is left untouched if serialization was stopped or failed.
+     * @param tree tree to be serialized
+     * @param dictionary dictionary node labels are encoded with, null if nodes have no labels
+     * @param path path for tree to be serialized to (MUST end with ".tt" or ".tt.gz" for a compressed file)
+     * @param token token to stop serialization with, null if serialization cannot be stopped
+     * @throws IllegalArgumentException if path was provided with incorrect extension or some node has no label
+     * @throws OperationCancelledException if token was cancelled or its time budget ran out
+     * @throws IOException if file operations raised an error
+     * */
+    public static void serializeTree(TreeView tree, NodeDictionary dictionary, String path, CancellationToken token)
+            throws IOException {
+        if (!hasSerializationExtension(path)) {
             throw new IllegalArgumentException("Incorrect file format! Only " + EXTENSION + " files are supported!");
         }
-        FileWriter writer = new FileWriter(path);
-        writer.write(getTreeData(this));
-        writer.close();
+        CancellationToken.Progress progress = new CancellationToken.Progress(token, tree.size());
+        progress.start();
+        Path target = Path.of(path).toAbsolutePath();
+        // temporary file keeps the compression of the target
+        Path temporary = TreeFiles.createTemporaryFile(target,
+                TEMPORARY_EXTENSION + (TreeFiles.isCompressed(path) ? TreeFiles.GZIP_EXTENSION : ""));
+        try {
+            try (Writer writer = TreeFiles.newWriter(temporary.toString())) {
+                if (dictionary != null && !tree.isEmpty()) {
+                    writeLabels(tree, dictionary, writer);
+                }
+                if (!tree.isEmpty()) {
+                    progress.step();
+                }
+                writeTreeData(tree, writer, progress);
+            }
+            TreeFiles.replace(temporary, target);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        progress.finish();
+    }
+
+    /**
+     * Writes labels of all the nodes of the tree into out, in BFS order
+     * */
+    private static void writeLabels(TreeView tree, NodeDictionary dictionary, Appendable out) throws IOException {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(tree.getRootIndex());
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            out.append(LABEL_PREFIX).append(String.valueOf(current)).append(" ").append(dictionary.decode(current)).append("\n");
+            for (int i = 0; i < tree.getChildCount(current); i++) {
+                queue.add(tree.getChild(current, i));
+            }
+        }
     }
 
     /**
      * Performs tree deserialization for the given path
-     * @param path path for tree to be deserialized from
+     * @param path path for tree to be deserialized from (".tt" or ".tt.gz" for a compressed file)
      * @return tree deserialized from path
      * @throws IllegalArgumentException if path was provided with incorrect extension
      * @throws NumberFormatException if some node index was incorrectly provided
@@ -395,37 +1063,79 @@ public class Tree {
      * @throws IOException if file operations raised an error
      * */
     public static Tree deserializeTree(String path) throws IOException, NodeAlreadyExistsException {
-        if (!path.endsWith(EXTENSION)) {
+        return deserializeTree(path, null);
+    }
+
+    /**
+     * Performs deserialization of a tree with labelled nodes for the given path (see {@link #deserializeTree(String)})
+     * Saved labels are encoded with the dictionary, so the tree can be compared with other trees of the dictionary.
+     * @param path path for tree to be deserialized from (".tt" or ".tt.gz" for a compressed file)
+     * @param dictionary dictionary for labels to be encoded with, null to ignore labels and keep saved indexes
+     * @return tree deserialized from path
+     * @throws IllegalArgumentException if path was provided with incorrect extension or some node has no label
+     * @throws NumberFormatException if some node index was incorrectly provided
+     * @throws NodeAlreadyExistsException if some node index was provided by two different parents
+     * @throws IOException if file operations raised an error
+     * */
+    public static Tree deserializeTree(String path, NodeDictionary dictionary) throws IOException, NodeAlreadyExistsException {
+        if (!hasSerializationExtension(path)) {
             throw new IllegalArgumentException("Incorrect file format! Only " + EXTENSION + " files are supported!");
         }
-        File file = new File(path);
-        Scanner scanner = new Scanner(file);
+        try (BufferedReader reader = TreeFiles.newReader(path)) {
+            return deserializeTree(reader, dictionary);
+        }
+    }
+
+    /**
+     * Performs tree deserialization from the reader, line by line
+     * @param reader reader with serialized tree data
+     * @param dictionary dictionary for labels to be encoded with, null to ignore labels
+     * @return tree deserialized from reader
+     * @throws NumberFormatException if some node index was incorrectly provided
+     * @throws NodeAlreadyExistsException if some node index was provided by two different parents
+     * @throws IOException if reading raised an error
+     * */
+    private static Tree deserializeTree(BufferedReader reader, NodeDictionary dictionary) throws IOException, NodeAlreadyExistsException {
         Tree tree = new Tree();
-        if (!scanner.hasNextLine()) {
+        // saved index -> index in the dictionary
+        IntIntHashMap labels = new IntIntHashMap(16);
+        String line = reader.readLine();
+        while (line != null && line.startsWith(LABEL_PREFIX)) {
+            if (dictionary != null) {
+                int separator = line.indexOf(' ');
+                if (separator == -1) {
+                    throw new IllegalArgumentException("Invalid label specification: " + line);
+                }
+                labels.put(Integer.parseInt(line.substring(LABEL_PREFIX.length(), separator)),
+                        dictionary.encode(line.substring(separator + 1)));
+            }
+            line = reader.readLine();
+        }
+        if (line == null) {
             return tree;
         } else {
             // compute first line (root)
-            String root = scanner.nextLine();
+            String root = line;
             try {
-                tree.addRootNode(Integer.parseInt(root));
+                tree.addRootNode(getLabelIndex(Integer.parseInt(root), labels, dictionary));
             } catch (NumberFormatException e) {
                 throw new NumberFormatException("Root specification was invalid! " + e.getMessage());
             }
         }
-        while (scanner.hasNextLine()) {
-            String data = scanner.nextLine().replaceAll("[ \n\t]", "");
+        while ((line = reader.readLine()) != null) {
+            String data = line.replaceAll("[ \n\t]", "");
             if (data.equals(""))
                 continue;
-            String[] line = data.split(":"); //parent:child1,child2,...
-            if (line.length != 2) {
+            String[] parts = data.split(":"); //parent:child1,child2,...
+            if (parts.length != 2) {
                 throw new RuntimeException("Invalid format of data!");
             }
             try {
-                int parentIndex = Integer.parseInt(line[0]);
-                String[] children = line[1].split(",");
+                int parentIndex = getLabelIndex(Integer.parseInt(parts[0]), labels, dictionary);
+                String[] children = parts[1].split(",");
                 for (String child : children) {
-                    int childIndex = Integer.parseInt(child);
-                    tree.addNode(parentIndex, childIndex);
+                    int childIndex = getLabelIndex(Integer.parseInt(child), labels, dictionary);
+                    tree.insertNode(parentIndex, childIndex);
                 }
             } catch (NumberFormatException e) {
                 throw new NumberFormatException("Index in serialization was invalid " + e.getMessage());
@@ -435,9 +1145,29 @@ public class Tree {
                 // not possible as all the parents are explicilty provided
             }
         }
+        tree.computeSubtreeSizes();
         return tree;
     }
 
+    /**
+     * Returns index of the saved node in the dictionary
+     * @param index index of the node in the serialized data
+     * @param labels saved index -> index in the dictionary
+     * @param dictionary dictionary labels were encoded with, if null index is returned as it is
+     * @return index of the node in the dictionary
+     * @throws IllegalArgumentException if node has no saved label
+     * */
+    private static int getLabelIndex(int index, IntIntHashMap labels, NodeDictionary dictionary) {
+        if (dictionary == null) {
+            return index;
+        }
+        int label = labels.get(index, -1);
+        if (label == -1) {
+            throw new IllegalArgumentException("Node " + index + " has no label in the serialized data!");
+        }
+        return label;
+    }
+
     /**
      * Fills sb with a pretty representation of a main.java.Tree (as a tail-recursive function)
      * @param root parent node for which sb will be computed
@@ -445,27 +1175,44 @@ public class Tree {
      * @param acc accumulator StringBuilder that will have the result
      * */
     public void getTreeStringBuilder(Node root, int depth, StringBuilder acc) {
+        getTreeStringBuilder(root, depth, acc, null);
+    }
+
+    private void getTreeStringBuilder(Node root, int depth, StringBuilder acc, NodeDictionary dictionary) {
         int i = 0;
         for (Node child : root.children) {
             acc.append("   ".repeat(Math.max(0, depth)));
             if (i < root.children.size() - 1) {
-                acc.append("├──").append(child.index).append("\n");
+                acc.append("├──");
             } else {
-                acc.append("└──").append(child.index).append("\n");
+                acc.append("└──");
             }
+            NodeDictionary.appendLabel(dictionary, child.index, acc);
+            acc.append("\n");
             i++;
-            getTreeStringBuilder(child, depth + 1, acc);
+            getTreeStringBuilder(child, depth + 1, acc, dictionary);
         }
     }
 
     @Override
     public String toString() {
+        return toString(null);
+    }
+
+    /**
+     * Returns a pretty representation of the tree with node labels instead of indexes
+     * @param dictionary dictionary node labels are encoded with, null to print indexes
+     * @return pretty representation of the tree (empty string for an empty tree)
+     * */
+    public String toString(NodeDictionary dictionary) {
         if (root == null) {
             return "";
         }
         StringBuilder sb = new StringBuilder();
-        sb.append("└──").append(root.index).append("\n");
-        getTreeStringBuilder(root, 1, sb);
+        sb.append("└──");
+        NodeDictionary.appendLabel(dictionary, root.index, sb);
+        sb.append("\n");
+        getTreeStringBuilder(root, 1, sb, dictionary);
         return sb.toString();
     }
 
@@ -482,37 +1229,30 @@ public class Tree {
             return false;
         }
 
-        Tree.Node thisNode, otherNode;
-        Queue<Map.Entry<Tree.Node, Tree.Node>> queue = new ArrayDeque<>();
-        queue.add(new AbstractMap.SimpleImmutableEntry<>(this.root, tree.root));
-        while (!queue.isEmpty()) {
-            Map.Entry<Tree.Node, Tree.Node> desiredToGivenNodes = queue.poll();
-            otherNode = desiredToGivenNodes.getKey();
-            thisNode = desiredToGivenNodes.getValue();
-            // indexes of children of desired node
-            HashMap<Integer, Tree.Node> indexesOfChildren = new HashMap<>();
-            for (Tree.Node child : otherNode.getChildren()) {
-                indexesOfChildren.put(child.getIndex(), child);
-            }
-            for (Tree.Node child : thisNode.getChildren()) {
-                if (!indexesOfChildren.containsKey(child.getIndex())) {
+        // children are sorted, so matching them is a linear merge of both lists
+        ArrayDeque<Tree.Node> thisQueue = new ArrayDeque<>(), otherQueue = new ArrayDeque<>();
+        thisQueue.add(this.root);
+        otherQueue.add(tree.root);
+        while (!thisQueue.isEmpty()) {
+            List<Tree.Node> thisChildren = thisQueue.poll().children;
+            List<Tree.Node> otherChildren = otherQueue.poll().children;
+            if (thisChildren.size() != otherChildren.size()) {
+                return false;
+            }
+            for (int i = 0; i < thisChildren.size(); i++) {
+                if (thisChildren.get(i).index != otherChildren.get(i).index) {
                     // node in given tree is not in the other tree
                     return false;
-                } else {
-                    // node in given tree is presented in desired one and we can add it to queue
-                    queue.add(new AbstractMap.SimpleImmutableEntry<>(indexesOfChildren.get(child.getIndex()), child));
-                    // we don't need to additionally create this node, it's already in the given tree
-                    indexesOfChildren.remove(child.getIndex());
                 }
+                thisQueue.add(thisChildren.get(i));
+                otherQueue.add(otherChildren.get(i));
             }
-            if (!indexesOfChildren.isEmpty())
-                return false;
         }
         return true;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(root, leaves, takenIndexes);
+        return Objects.hash(root, leaves, nodes);
     }
 }
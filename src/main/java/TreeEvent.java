@@ -0,0 +1,98 @@
+package main.java;
+
+import java.util.Objects;
+
+/**
+ * Mutation of a {@link Tree} delivered by {@link TreePublisher}
+ * Applying events in the order of delivery to a copy of the tree keeps the copy equal to the tree.
+ */
+public class TreeEvent {
+    public enum Type {
+        /** child was added to parent (parent becomes the root if the tree was empty) */
+        ADD,
+        /** leaf child was removed from parent */
+        REMOVE,
+        /** whole subtree of child was removed from parent */
+        REMOVE_SUBTREE,
+        /** subscriber could not keep up and events were dropped, copy has to be rebuilt from the tree */
+        RESYNC
+    }
+
+    private final Type type;
+    private final int parent;
+    private final int child;
+    private final long modificationCount;
+
+    public TreeEvent(Type type, int parent, int child, long modificationCount) {
+        this.type = type;
+        this.parent = parent;
+        this.child = child;
+        this.modificationCount = modificationCount;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return index of the parent, -1 if removed node was the root
+     * */
+    public int getParent() {
+        return parent;
+    }
+
+    /**
+     * @return index of the added or removed node
+     * */
+    public int getChild() {
+        return child;
+    }
+
+    /**
+     * Returns {@link Tree#getModificationCount()} right after the mutation
+     * Events of a single mutation (e.g. a grafted subtree) share the count. For {@link Type#RESYNC} it is the count
+     * of the first dropped event, a copy rebuilt from the tree should skip events with counts up to its own count.
+     * @return modification count of the tree after the mutation
+     * */
+    public long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Applies the mutation to a copy of the tree
+     * @param tree copy of the tree the event was published by
+     * @throws IllegalStateException if event is {@link Type#RESYNC}
+     * */
+    public void apply(Tree tree) {
+        switch (type) {
+            case ADD -> tree.addNode(parent, child);
+            case REMOVE -> tree.removeNode(child);
+            case REMOVE_SUBTREE -> tree.removeSubtree(child);
+            case RESYNC -> throw new IllegalStateException("Events were dropped, copy has to be rebuilt from the tree!");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TreeEvent that = (TreeEvent) o;
+        return type == that.type && parent == that.parent && child == that.child
+                && modificationCount == that.modificationCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, parent, child, modificationCount);
+    }
+
+    @Override
+    public String toString() {
+        return switch (type) {
+            case ADD -> String.format("Add(%s, %s)", parent, child);
+            case REMOVE -> String.format("Remove(%s)", child);
+            case REMOVE_SUBTREE -> String.format("RemoveSubtree(%s)", child);
+            case RESYNC -> "Resync";
+        };
+    }
+}
@@ -0,0 +1,142 @@
+package main.java;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * File access helpers shared by tree parsing, serialization and diff output.
+ * Paths ending with {@link #GZIP_EXTENSION} are transparently (de)compressed while streaming,
+ * so a compressed file is never inflated into memory as a whole.
+ */
+public class TreeFiles {
+    public static final String GZIP_EXTENSION = ".gz";
+    // large buffers keep the number of channel reads/writes (and inflater calls) low
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Returns true if the path denotes a gzip compressed file
+     * @param path path to be checked
+     * @return true if path ends with ".gz"
+     * */
+    public static boolean isCompressed(String path) {
+        return path.endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Returns path without the compression extension (if any)
+     * E.g.: tree.tt.gz -> tree.tt
+     * @param path path to be stripped
+     * @return path without ".gz" suffix
+     * */
+    public static String stripCompression(String path) {
+        return isCompressed(path) ? path.substring(0, path.length() - GZIP_EXTENSION.length()) : path;
+    }
+
+    /**
+     * Opens a buffered input stream for the path, decompressing it on the fly if it is a ".gz" file
+     * @param path path of the file to be read
+     * @return buffered (and possibly decompressing) input stream
+     * @throws IOException if file could not be opened
+     * */
+    public static InputStream newInputStream(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ);
+        InputStream in = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+        if (isCompressed(path)) {
+            try {
+                return new GZIPInputStream(in, BUFFER_SIZE);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+        return in;
+    }
+
+    /**
+     * Opens a buffered output stream for the path, compressing it on the fly if it is a ".gz" file
+     * Existing file will be truncated.
+     * @param path path of the file to be written
+     * @return buffered (and possibly compressing) output stream
+     * @throws IOException if file could not be opened
+     * */
+    public static OutputStream newOutputStream(String path) throws IOException {
+        FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        OutputStream out = Channels.newOutputStream(channel);
+        if (isCompressed(path)) {
+            // GZIPOutputStream has its own deflate buffer, so the channel only sees large chunks
+            return new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a UTF-8 reader for the path (see {@link #newInputStream(String)})
+     * @param path path of the file to be read
+     * @return buffered reader over the (decompressed) file content
+     * @throws IOException if file could not be opened
+     * */
+    public static BufferedReader newReader(String path) throws IOException {
+        return new BufferedReader(new InputStreamReader(newInputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Opens a UTF-8 writer for the path (see {@link #newOutputStream(String)})
+     * @param path path of the file to be written
+     * @return buffered writer into the (compressed) file
+     * @throws IOException if file could not be opened
+     * */
+    public static BufferedWriter newWriter(String path) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(newOutputStream(path), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Creates an empty temporary file next to the target (e.g. tree.tt.1234.tmp), to be moved over the target
+     * with {@link #replace(Path, Path)} once it is completely written.
+     * Unlike {@link Files#createTempFile}, which creates owner-only files, the file gets the default permissions
+     * of new files (as limited by the umask), as if the target was written directly.
+     * @param target file that will be replaced
+     * @param suffix suffix of the temporary file, e.g. ".tmp.gz" to keep the compression of the target
+     * @return path of the created temporary file
+     * @throws IOException if file could not be created
+     * */
+    public static Path createTemporaryFile(Path target, String suffix) throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        while (true) {
+            Path temporary = directory.resolve(target.getFileName() + "."
+                    + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + suffix);
+            try {
+                return Files.createFile(temporary);
+            } catch (FileAlreadyExistsException e) {
+                // name is taken, another one is tried
+            }
+        }
+    }
+
+    /**
+     * Atomically replaces the target with the temporary file (see {@link #createTemporaryFile(Path, String)}),
+     * an existing target keeps its permissions
+     * @param temporary completely written temporary file
+     * @param target file to be replaced
+     * @throws IOException if file operations failed
+     * */
+    public static void replace(Path temporary, Path target) throws IOException {
+        try {
+            Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(target));
+        } catch (NoSuchFileException | UnsupportedOperationException e) {
+            // new target (or no POSIX permissions), temporary file already has the default ones
+        }
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
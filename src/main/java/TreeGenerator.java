@@ -0,0 +1,309 @@
+package main.java;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generator of synthetic trees of a controllable shape, used to reproduce large inputs without hand-written files.
+ * Nodes are numbered 0..size-1 in the order of creation (0 is the root, every parent is created before its children),
+ * so edges can be streamed directly into a file without keeping the tree in memory.
+ * Same seed always generates the same tree.
+ */
+public class TreeGenerator {
+    public static final String BINARY_EXTENSION = ".bin";
+
+    /**
+     * Shape of the generated tree
+     */
+    public enum Shape {
+        /** complete tree, every node has fanOut children (except for the last ones) */
+        KARY,
+        /** random recursive tree, parent of every node is chosen uniformly among the previous nodes */
+        RANDOM,
+        /** preferential attachment, nodes with many children are more likely to get another one (power-law fan-out) */
+        POWER_LAW,
+        /** single path from the root, depth is equal to size */
+        CHAIN;
+
+        /**
+         * @param name case-insensitive name of the shape, e.g. "k-ary", "power-law"
+         * @return shape with the name
+         * @throws IllegalArgumentException if there is no such shape
+         * */
+        public static Shape of(String name) {
+            String normalized = name.toUpperCase(Locale.ROOT).replace("-", "_");
+            return valueOf(normalized.equals("K_ARY") ? "KARY" : normalized);
+        }
+    }
+
+    /**
+     * Consumer of generated edges
+     */
+    public interface EdgeConsumer {
+        void accept(int parent, int child) throws IOException;
+    }
+
+    private final Shape shape;
+    private final int size;
+    private final int fanOut;
+    private final long seed;
+
+    /**
+     * @param shape shape of the tree
+     * @param size number of nodes (at least 2, so that the tree can be described by edges)
+     * @param fanOut number of children of every node for {@link Shape#KARY}, ignored by other shapes
+     * @param seed seed of the random generator
+     * @throws IllegalArgumentException if size or fanOut is invalid
+     * */
+    public TreeGenerator(Shape shape, int size, int fanOut, long seed) {
+        if (size < 2) {
+            throw new IllegalArgumentException("Tree should have at least 2 nodes!");
+        } else if (fanOut < 1) {
+            throw new IllegalArgumentException("Fan-out should be positive!");
+        }
+        this.shape = shape;
+        this.size = size;
+        this.fanOut = fanOut;
+        this.seed = seed;
+    }
+
+    /**
+     * Streams all edges of the tree into consumer, in the order of node creation
+     * @param consumer consumer of the edges
+     * @throws IOException if consumer failed
+     * */
+    public void generate(EdgeConsumer consumer) throws IOException {
+        Random random = new Random(seed);
+        // for power-law shape every node is present once plus once per child, uniform choice prefers big parents
+        int[] targets = shape == Shape.POWER_LAW ? new int[2 * size] : null;
+        int targetCount = 0;
+        if (targets != null) {
+            targets[targetCount++] = 0;
+        }
+        for (int child = 1; child < size; child++) {
+            int parent = switch (shape) {
+                case KARY -> (child - 1) / fanOut;
+                case RANDOM -> random.nextInt(child);
+                case POWER_LAW -> targets[random.nextInt(targetCount)];
+                case CHAIN -> child - 1;
+            };
+            if (targets != null) {
+                targets[targetCount++] = parent;
+                targets[targetCount++] = child;
+            }
+            consumer.accept(parent, child);
+        }
+    }
+
+    /**
+     * @return generated tree in memory
+     * */
+    public Tree generateTree() {
+        Tree tree = new Tree();
+        try {
+            // sizes are computed once at the end, a deep chain would be quadratic otherwise
+            generate(tree::insertNode);
+        } catch (IOException e) {
+            // insertNode does not throw
+            throw new UncheckedIOException(e);
+        }
+        tree.computeSubtreeSizes();
+        return tree;
+    }
+
+    /**
+     * Streams generated tree into a file, format is chosen by the file extension:
+     *      ".tt" (or ".tt.gz") - serialized tree (see {@link Tree#serializeTree(String)}),
+     *      ".bin" - memory-mapped {@link OffHeapTree},
+     *      ".tts" - read-only {@link TreeSnapshot},
+     *      anything else - edge list [parent,child][parent,child]... (compressed if file ends with ".gz")
+     * Only edge lists and binary files are written without building the tree on the heap first.
+     * @param path path of the file to be written
+     * @throws IOException if file operations failed
+     * */
+    public void write(String path) throws IOException {
+        if (TreeFiles.stripCompression(path).endsWith(Tree.EXTENSION)) {
+            Tree.serializeTree(generateTree(), path);
+        } else if (path.endsWith(TreeSnapshot.EXTENSION)) {
+            TreeSnapshot.write(generateTree(), Path.of(path));
+        } else if (path.endsWith(BINARY_EXTENSION)) {
+            try (OffHeapTree tree = OffHeapTree.create(Path.of(path))) {
+                generate(tree::addNode);
+            }
+        } else {
+            try (Writer writer = TreeFiles.newWriter(path)) {
+                generate((parent, child) -> writeEdge(writer, parent, child));
+            }
+        }
+    }
+
+    /**
+     * Writes tree (e.g. a mutated one) into a file, format is chosen by the extension (see {@link #write(String)})
+     * @param tree tree to be written
+     * @param path path of the file to be written
+     * @throws IOException if file operations failed
+     * */
+    public static void write(TreeView tree, String path) throws IOException {
+        if (TreeFiles.stripCompression(path).endsWith(Tree.EXTENSION)) {
+            Tree.serializeTree(tree, path);
+        } else if (path.endsWith(TreeSnapshot.EXTENSION)) {
+            TreeSnapshot.write(tree, Path.of(path));
+        } else if (tree.isEmpty()) {
+            throw new IllegalArgumentException("Empty tree cannot be written as edges!");
+        } else if (path.endsWith(BINARY_EXTENSION)) {
+            try (OffHeapTree result = OffHeapTree.create(Path.of(path))) {
+                forEachEdge(tree, tree.getRootIndex(), result::addNode);
+            }
+        } else {
+            try (Writer writer = TreeFiles.newWriter(path)) {
+                forEachEdge(tree, tree.getRootIndex(), (parent, child) -> writeEdge(writer, parent, child));
+            }
+        }
+    }
+
+    private static void writeEdge(Writer writer, int parent, int child) throws IOException {
+        writer.write('[');
+        writer.write(Integer.toString(parent));
+        writer.write(',');
+        writer.write(Integer.toString(child));
+        writer.write(']');
+    }
+
+    /**
+     * Streams edges of the subtree of root into consumer in BFS order
+     * */
+    private static void forEachEdge(TreeView tree, int root, EdgeConsumer consumer) throws IOException {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int childCount = tree.getChildCount(current);
+            for (int i = 0; i < childCount; i++) {
+                int child = tree.getChild(current, i);
+                consumer.accept(current, child);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Returns a mutated copy of the tree, so that given and desired trees of a realistic pair differ in
+     * about editRatio * size instructions. Mutations are random mixes of:
+     * adding new leaves, removing leaves and moving small subtrees under other parents.
+     * New nodes get indexes above the maximal index of the tree. Root is never changed.
+     * @param tree tree to be mutated (not modified)
+     * @param editRatio ratio of the transformation instructions to the tree size, e.g. 0.01
+     * @param seed seed of the random generator
+     * @return mutated copy of the tree
+     * @throws IllegalArgumentException if editRatio is negative
+     * */
+    public static Tree mutate(TreeView tree, double editRatio, long seed) {
+        if (editRatio < 0) {
+            throw new IllegalArgumentException("Edit ratio cannot be negative!");
+        }
+        Tree result = Tree.copyOf(tree);
+        if (result.size() < 2) {
+            return result;
+        }
+        ArrayList<Integer> ids = new ArrayList<>(result.size());
+        ids.add(result.getRootIndex());
+        try {
+            forEachEdge(result, result.getRootIndex(), (parent, child) -> ids.add(child));
+        } catch (IOException e) {
+            // list does not throw
+            throw new UncheckedIOException(e);
+        }
+        int nextIndex = 0;
+        for (int id : ids) {
+            nextIndex = Math.max(nextIndex, id + 1);
+        }
+        Random random = new Random(seed);
+        long budget = Math.round(editRatio * tree.size());
+        // bounded number of attempts, so that a small budget or an unlucky tree cannot loop forever
+        for (long attempts = 0; budget > 0 && attempts < 16 * budget + 64; attempts++) {
+            int node = randomNode(result, ids, random);
+            int operation = random.nextInt(3);
+            if (operation == 0) {
+                result.addNode(node, nextIndex);
+                ids.add(nextIndex++);
+                budget--;
+            } else if (operation == 1) {
+                if (node != result.getRootIndex() && result.getChildCount(node) == 0) {
+                    result.removeNode(node);
+                    budget--;
+                }
+            } else {
+                budget -= moveSubtree(result, node, randomNode(result, ids, random), budget);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a random node of the tree, ids of removed nodes are dropped from the list lazily
+     * */
+    private static int randomNode(Tree tree, ArrayList<Integer> ids, Random random) {
+        while (true) {
+            int position = random.nextInt(ids.size());
+            int id = ids.get(position);
+            if (tree.containsNode(id)) {
+                return id;
+            }
+            ids.set(position, ids.get(ids.size() - 1));
+            ids.remove(ids.size() - 1);
+        }
+    }
+
+    /**
+     * Moves the subtree of node under newParent if it is possible and fits into the budget
+     * A move costs removal and creation of every node of the subtree.
+     * @return number of instructions the move costs, 0 if nothing was moved
+     * */
+    private static long moveSubtree(Tree tree, int node, int newParent, long budget) {
+        int subtreeSize = tree.getSubtreeSize(node);
+        if (node == tree.getRootIndex() || 2L * subtreeSize > budget) {
+            return 0;
+        }
+        // copy of the subtree, new parent must not be inside of it
+        Tree subtree = new Tree();
+        HashSet<Integer> moved = new HashSet<>();
+        moved.add(node);
+        try {
+            forEachEdge(tree, node, (parent, child) -> {
+                subtree.addNode(parent, child);
+                moved.add(child);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (moved.contains(newParent) || isParent(tree, newParent, node)) {
+            return 0;
+        }
+        tree.removeSubtree(node);
+        if (subtree.isEmpty()) {
+            tree.addNode(newParent, node);
+        } else {
+            tree.graftSubtree(newParent, subtree);
+        }
+        return 2L * subtreeSize;
+    }
+
+    /**
+     * @return true if parent is the parent of node (moving node there would change nothing)
+     * */
+    private static boolean isParent(Tree tree, int parent, int node) {
+        for (Tree.Node child : tree.getNode(parent).getChildren()) {
+            if (child.getIndex() == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,167 @@
+package main.java;
+
+/**
+ * Optional index over any {@link TreeView} answering structural queries without walking parent pointers:
+ * subtree membership (ancestor checks) and depth in O(1), lowest common ancestor in O(1).
+ * Index is built from one pre-order traversal: every node gets an entry timestamp (its pre-order rank)
+ * and an exit timestamp (rank of the last node of its subtree), so node X is inside of the subtree of Y
+ * iff entry(Y) <= entry(X) <= exit(Y). Lowest common ancestors are answered with a sparse table of
+ * range minimums of depths over the pre-order (O(n log n) memory).
+ * The index is rebuilt lazily on the first query after the tree was modified.
+ */
+public class TreeIndex {
+    private final TreeView tree;
+    private long modificationCount = -1;
+    private IntIntHashMap ranks; // node index -> pre-order rank
+    private int[] nodes; // rank -> node index
+    private int[] exits; // rank -> rank of the last node in the subtree
+    private int[] depths; // rank -> depth
+    private int[] parents; // rank -> rank of the parent (-1 for the root)
+    private int[][] minimums; // minimums[k][i] = rank with minimal depth in ranks [i, i + 2^k)
+
+    /**
+     * @param tree tree to be indexed (index is built on the first query)
+     * */
+    public TreeIndex(TreeView tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Returns true if node is inside of the subtree of subtreeRoot (every node is inside of its own subtree)
+     * @param node index of the node
+     * @param subtreeRoot index of the subtree root
+     * @return true if subtreeRoot is node or one of its ancestors
+     * @throws IllegalArgumentException if some node is not present in the tree
+     * */
+    public boolean isInSubtree(int node, int subtreeRoot) {
+        refresh();
+        int rank = getRank(node), rootRank = getRank(subtreeRoot);
+        return rootRank <= rank && rank <= exits[rootRank];
+    }
+
+    /**
+     * @param index index of the node
+     * @return depth of the node (0 for the root)
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    public int getDepth(int index) {
+        refresh();
+        return depths[getRank(index)];
+    }
+
+    /**
+     * @param index index of the node
+     * @return number of nodes in the subtree of the node (including the node itself)
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    public int getSubtreeSize(int index) {
+        refresh();
+        int rank = getRank(index);
+        return exits[rank] - rank + 1;
+    }
+
+    /**
+     * Returns the deepest node that has both nodes in its subtree
+     * @param first index of the first node
+     * @param second index of the second node
+     * @return index of the lowest common ancestor
+     * @throws IllegalArgumentException if some node is not present in the tree
+     * */
+    public int getLowestCommonAncestor(int first, int second) {
+        refresh();
+        int a = getRank(first), b = getRank(second);
+        if (a > b) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        if (b <= exits[a]) {
+            // first node is an ancestor of the second one
+            return nodes[a];
+        }
+        // shallowest node between them (in pre-order) is a child of the common ancestor on the path to b
+        int from = a + 1, length = b - a;
+        int level = 31 - Integer.numberOfLeadingZeros(length);
+        int left = minimums[level][from], right = minimums[level][b - (1 << level) + 1];
+        int shallowest = depths[left] <= depths[right] ? left : right;
+        return nodes[parents[shallowest]];
+    }
+
+    private int getRank(int index) {
+        int rank = ranks.get(index, -1);
+        if (rank == -1) {
+            throw new IllegalArgumentException("Node " + index + " is not present in the tree!");
+        }
+        return rank;
+    }
+
+    /**
+     * Rebuilds the index if the tree was modified since the last build
+     * */
+    private void refresh() {
+        if (modificationCount != tree.getModificationCount() || ranks == null) {
+            build();
+            modificationCount = tree.getModificationCount();
+        }
+    }
+
+    private void build() {
+        int size = tree.size();
+        ranks = new IntIntHashMap(size);
+        nodes = new int[size];
+        exits = new int[size];
+        depths = new int[size];
+        parents = new int[size];
+        if (size == 0) {
+            minimums = new int[1][0];
+            return;
+        }
+        // iterative pre-order traversal, stack holds ranks and positions of the next child to be visited
+        int[] stack = new int[size];
+        int[] positions = new int[size];
+        int top = 0, next = 0;
+        visit(tree.getRootIndex(), next++, -1, 0);
+        stack[0] = 0;
+        positions[0] = 0;
+        while (top >= 0) {
+            int rank = stack[top];
+            int node = nodes[rank];
+            if (positions[top] < tree.getChildCount(node)) {
+                int child = tree.getChild(node, positions[top]++);
+                visit(child, next, rank, depths[rank] + 1);
+                stack[++top] = next++;
+                positions[top] = 0;
+            } else {
+                exits[rank] = next - 1;
+                top--;
+            }
+        }
+        buildSparseTable(size);
+    }
+
+    private void visit(int index, int rank, int parent, int depth) {
+        ranks.put(index, rank);
+        nodes[rank] = index;
+        parents[rank] = parent;
+        depths[rank] = depth;
+    }
+
+    private void buildSparseTable(int size) {
+        int levels = 32 - Integer.numberOfLeadingZeros(size);
+        minimums = new int[levels][];
+        minimums[0] = new int[size];
+        for (int i = 0; i < size; i++) {
+            minimums[0][i] = i;
+        }
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            int[] previous = minimums[k - 1];
+            int[] current = new int[size - (1 << k) + 1];
+            for (int i = 0; i < current.length; i++) {
+                int left = previous[i], right = previous[i + half];
+                current[i] = depths[left] <= depths[right] ? left : right;
+            }
+            minimums[k] = current;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package main.java;
+
+import main.java.Tree.Node;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Three-way merge of two trees edited concurrently from the same base tree.
+ * State of a node is its parent (or absence), node is changed by a side if its parent differs from the base one.
+ * Changes of both sides are computed in parallel by top-down traversals of the base and the edited trees,
+ * subtrees with equal sizes and hashes (see {@link Tree#getSubtreeHash(int)}) are taken as unchanged and are skipped
+ * without visiting, so the time depends on the changed regions (and their paths from the root), not on the size
+ * of the trees. The result is therefore correct with high probability only: if a changed subtree collides with
+ * its base one (same size and 64-bit hash, by chance, as the hashes are keyed per process), changes of that side
+ * inside the subtree are lost from the merge without a conflict.
+ * Then every changed node is merged three-way: change of a single side is taken, same changes of both sides
+ * are taken once, different changes are a {@link MergeConflict.Type#DIVERGENT} conflict. Merged states are checked
+ * to form a tree (parents present, no cycles, single root), conflicting changes are reverted to the base state
+ * until they do. Instructions are derived from the merged states directly, only building the merged tree
+ * copies the base tree (it is done on request, see {@link MergeResult#getTree()}).
+ */
+public class TreeMerger {
+    private static final long ABSENT = Long.MIN_VALUE; // node is not present in the tree
+    private static final long ROOT = Long.MAX_VALUE; // node is the root of the tree
+
+    /**
+     * Changed node with its states (parents) in all the trees
+     */
+    private static class Change {
+        private final int node;
+        private final long base;
+        private final long ours;
+        private final long theirs;
+        private long merged;
+
+        Change(int node, long base, long ours, long theirs) {
+            this.node = node;
+            this.base = base;
+            this.ours = ours;
+            this.theirs = theirs;
+        }
+    }
+
+    private final Tree base;
+    private final HashMap<Integer, Change> changes = new HashMap<>();
+    private final HashSet<Integer> reverted = new HashSet<>(); // nodes whose change was reverted because of a conflict
+    private final List<MergeConflict> conflicts = new ArrayList<>();
+    private final List<Integer> removals = new ArrayList<>(); // roots of the subtrees removed from the base tree
+    private final HashMap<Long, List<Integer>> additions = new HashMap<>(); // parent state -> added children
+
+    private TreeMerger(Tree base) {
+        this.base = base;
+    }
+
+    /**
+     * Merges changes of ours and theirs trees made to the base tree, none of the trees is modified
+     * @param base common tree both trees were edited from
+     * @param ours tree edited by one side
+     * @param theirs tree edited by the other side
+     * @return merged tree, conflicts and instructions transforming the base tree into the merged one
+     * */
+    public static MergeResult merge(Tree base, Tree ours, Tree theirs) {
+        CompletableFuture<HashMap<Integer, Long>> theirChanges = CompletableFuture.supplyAsync(
+                () -> getChanges(base, theirs));
+        HashMap<Integer, Long> ourChanges = getChanges(base, ours);
+        TreeMerger merger = new TreeMerger(base);
+        try {
+            merger.mergeChanges(ourChanges, theirChanges.join());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        merger.resolve();
+        merger.plan();
+        return new MergeResult(merger, Collections.unmodifiableList(merger.conflicts));
+    }
+
+    /**
+     * Matched subtrees (same index, same parent) are taken as unchanged if their sizes and hashes are equal,
+     * which is wrong only on a hash collision (see class description)
+     * */
+    private static boolean isUnchanged(Node base, Node edited) {
+        return base.getSubtreeSize() == edited.getSubtreeSize() && base.getSubtreeHash() == edited.getSubtreeHash();
+    }
+
+    /**
+     * Returns states of all the nodes whose parents in the edited tree differ from the base tree
+     * @param base base tree
+     * @param edited edited tree
+     * @return changed node -> its parent in the edited tree (ABSENT, ROOT or index of the parent)
+     * */
+    private static HashMap<Integer, Long> getChanges(Tree base, Tree edited) {
+        List<Node> removed = new ArrayList<>(); // roots of removed subtrees of the base tree
+        List<Node> added = new ArrayList<>(); // roots of added subtrees of the edited tree
+        if (base.isEmpty() || edited.isEmpty() || base.getRootIndex() != edited.getRootIndex()) {
+            if (!base.isEmpty()) {
+                removed.add(base.getRoot());
+            }
+            if (!edited.isEmpty()) {
+                added.add(edited.getRoot());
+            }
+        } else if (!isUnchanged(base.getRoot(), edited.getRoot())) {
+            // matched nodes have same index and are children of parents with same index in both trees
+            ArrayDeque<Integer> queue = new ArrayDeque<>();
+            queue.add(base.getRootIndex());
+            while (!queue.isEmpty()) {
+                int index = queue.poll();
+                List<Node> baseChildren = base.getNode(index).getChildren();
+                List<Node> editedChildren = edited.getNode(index).getChildren();
+                // children are sorted by index in both trees, so they are matched by a linear merge
+                int i = 0, j = 0;
+                while (i < baseChildren.size() || j < editedChildren.size()) {
+                    Node baseChild = i < baseChildren.size() ? baseChildren.get(i) : null;
+                    Node editedChild = j < editedChildren.size() ? editedChildren.get(j) : null;
+                    if (editedChild == null || (baseChild != null && baseChild.getIndex() < editedChild.getIndex())) {
+                        removed.add(baseChild);
+                        i++;
+                    } else if (baseChild == null || baseChild.getIndex() > editedChild.getIndex()) {
+                        added.add(editedChild);
+                        j++;
+                    } else {
+                        if (!isUnchanged(baseChild, editedChild)) {
+                            queue.add(baseChild.getIndex());
+                        }
+                        i++;
+                        j++;
+                    }
+                }
+            }
+        }
+        HashMap<Integer, Long> changes = new HashMap<>();
+        for (Node root : removed) {
+            forEachNode(root, node -> changes.put(node.getIndex(), ABSENT));
+        }
+        for (Node root : added) {
+            forEachNode(root, node -> changes.put(node.getIndex(), getState(node)));
+        }
+        // nodes removed and added back with the same parent (whole subtree of their parent moved) are not changed
+        changes.entrySet().removeIf(entry -> entry.getValue() == getState(base, entry.getKey()));
+        return changes;
+    }
+
+    private interface NodeConsumer {
+        void accept(Node node);
+    }
+
+    private static void forEachNode(Node root, NodeConsumer consumer) {
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            consumer.accept(node);
+            queue.addAll(node.getChildren());
+        }
+    }
+
+    private static long getState(Node node) {
+        return node.getParent() == null ? ROOT : node.getParent().getIndex();
+    }
+
+    private static long getState(Tree tree, int index) {
+        Node node = tree.getNode(index);
+        return node == null ? ABSENT : getState(node);
+    }
+
+    /**
+     * Merges states of every node changed by some side three-way
+     * */
+    private void mergeChanges(HashMap<Integer, Long> ourChanges, HashMap<Integer, Long> theirChanges) {
+        for (var entry : ourChanges.entrySet()) {
+            int node = entry.getKey();
+            long baseState = getState(base, node);
+            changes.put(node, new Change(node, baseState, entry.getValue(), theirChanges.getOrDefault(node, baseState)));
+        }
+        for (var entry : theirChanges.entrySet()) {
+            int node = entry.getKey();
+            if (!ourChanges.containsKey(node)) {
+                changes.put(node, new Change(node, getState(base, node), getState(base, node), entry.getValue()));
+            }
+        }
+        for (Change change : changes.values()) {
+            if (change.ours == change.base) {
+                change.merged = change.theirs;
+            } else if (change.theirs == change.base || change.theirs == change.ours) {
+                change.merged = change.ours;
+            } else {
+                change.merged = change.base;
+                reverted.add(change.node);
+                addConflict(MergeConflict.Type.DIVERGENT, change);
+            }
+        }
+    }
+
+    private long getMergedState(int node) {
+        Change change = changes.get(node);
+        return change == null ? getState(base, node) : change.merged;
+    }
+
+    /**
+     * Reverts changes until merged states form a tree: every present node has a present parent,
+     * every node reaches the root and there is at most one root.
+     * Every revert restores the base state of some node, so it ends at the latest with the base tree.
+     * */
+    private void resolve() {
+        boolean valid;
+        do {
+            valid = true;
+            HashSet<Integer> rooted = new HashSet<>(); // nodes whose path of merged parents reaches the root
+            List<Change> roots = new ArrayList<>();
+            for (Change change : new ArrayList<>(changes.values())) {
+                long state = change.merged;
+                if (state == ABSENT) {
+                    continue;
+                } else if (state == ROOT) {
+                    roots.add(change);
+                } else if (getMergedState((int) state) == ABSENT) {
+                    valid = false;
+                    int parent = (int) state;
+                    if (change.merged != change.base) {
+                        // drops the addition or the move, reverted parent means the node was part of another conflict
+                        if (!reverted.contains(parent)) {
+                            addConflict(MergeConflict.Type.ORPHAN, change);
+                        }
+                        revert(change);
+                    } else {
+                        // node is already in its base state, its deleted parent is restored
+                        revert(changes.get(parent));
+                    }
+                } else if (!reachesRoot(change.node, rooted)) {
+                    valid = false;
+                }
+            }
+            if (!base.isEmpty() && !changes.containsKey(base.getRootIndex())) {
+                roots.add(null);
+            }
+            if (roots.size() > 1) {
+                valid = false;
+                for (Change root : roots) {
+                    if (root != null && root.merged != root.base) {
+                        addConflict(MergeConflict.Type.ROOT, root);
+                        revert(root);
+                    }
+                }
+            }
+        } while (!valid);
+    }
+
+    /**
+     * Follows merged parents of the node, reverts changed nodes of the cycle if it runs into one
+     * @return true if path reaches the root, false if a cycle was reverted or path contains an absent node
+     * */
+    private boolean reachesRoot(int node, HashSet<Integer> rooted) {
+        List<Integer> path = new ArrayList<>();
+        HashSet<Integer> visited = new HashSet<>();
+        int current = node;
+        while (!rooted.contains(current)) {
+            long state = getMergedState(current);
+            if (state == ROOT) {
+                break;
+            } else if (state == ABSENT) {
+                // orphan is found and reverted from its own change
+                return false;
+            }
+            path.add(current);
+            visited.add(current);
+            current = (int) state;
+            if (visited.contains(current)) {
+                for (int i = path.indexOf(current); i < path.size(); i++) {
+                    Change change = changes.get(path.get(i));
+                    if (change != null && change.merged != change.base) {
+                        addConflict(MergeConflict.Type.CYCLE, change);
+                        revert(change);
+                    }
+                }
+                return false;
+            }
+        }
+        rooted.addAll(path);
+        return true;
+    }
+
+    private void revert(Change change) {
+        change.merged = change.base;
+        reverted.add(change.node);
+    }
+
+    private void addConflict(MergeConflict.Type type, Change change) {
+        conflicts.add(new MergeConflict(type, change.node, toParent(change.node, change.base),
+                toParent(change.node, change.ours), toParent(change.node, change.theirs)));
+    }
+
+    private static Integer toParent(int node, long state) {
+        if (state == ABSENT) {
+            return null;
+        }
+        return state == ROOT ? node : (int) state;
+    }
+
+    /**
+     * Finds the instructions from the base to the merged tree: every removed or moved node is removed
+     * together with its subtree, nodes of such subtrees that stay in the tree and all the new nodes are added back
+     * */
+    private void plan() {
+        for (Change change : changes.values()) {
+            if (change.merged == change.base) {
+                continue;
+            }
+            if (change.base == ABSENT) {
+                additions.computeIfAbsent(change.merged, key -> new ArrayList<>()).add(change.node);
+            } else if (!hasRemovedAncestor(change.node)) {
+                removals.add(change.node);
+                // descendants are removed together with the node, the ones that stay are added back
+                forEachNode(base.getNode(change.node), node -> {
+                    long state = getMergedState(node.getIndex());
+                    if (state != ABSENT) {
+                        additions.computeIfAbsent(state, key -> new ArrayList<>()).add(node.getIndex());
+                    }
+                });
+            }
+        }
+        for (List<Integer> children : additions.values()) {
+            Collections.sort(children);
+        }
+    }
+
+    private boolean hasRemovedAncestor(int index) {
+        for (Node node = base.getNode(index).getParent(); node != null; node = node.getParent()) {
+            Change change = changes.get(node.getIndex());
+            if (change != null && change.merged != change.base) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Calls consumer for every added node top-down, so that every parent is added before its children
+     * @param keptParents nodes of the base tree that stay in the merged tree are parents of the first added nodes
+     * */
+    private void forEachAddition(List<Integer> keptParents, AdditionConsumer consumer) {
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        List<Integer> roots = additions.get(ROOT);
+        if (roots != null) {
+            consumer.accept(null, roots.get(0));
+            queue.add(roots.get(0));
+        }
+        queue.addAll(keptParents);
+        while (!queue.isEmpty()) {
+            int parent = queue.poll();
+            List<Integer> children = additions.get((long) parent);
+            if (children == null) {
+                continue;
+            }
+            for (int child : children) {
+                consumer.accept(parent, child);
+                queue.add(child);
+            }
+        }
+    }
+
+    private interface AdditionConsumer {
+        void accept(Integer parent, int child);
+    }
+
+    /**
+     * @return parents of added nodes that are present in the base tree and are not removed (sorted)
+     * */
+    private List<Integer> getKeptParents() {
+        List<Integer> parents = new ArrayList<>();
+        for (long parent : additions.keySet()) {
+            if (parent != ROOT && base.containsNode((int) parent)) {
+                Change change = changes.get((int) parent);
+                if ((change == null || change.merged == change.base) && !hasRemovedAncestor((int) parent)) {
+                    parents.add((int) parent);
+                }
+            }
+        }
+        Collections.sort(parents);
+        return parents;
+    }
+
+    /**
+     * @return instructions transforming the base tree into the merged one (removals before additions)
+     */
+    String getTransformations() {
+        StringBuilder sb = new StringBuilder();
+        for (int root : removals) {
+            TreeTransformer.removeSubtree(base, root, sb);
+        }
+        // the first Add instruction creates the new root together with its child
+        forEachAddition(getKeptParents(), (parent, child) -> {
+            if (parent != null) {
+                sb.append("Add(").append(parent).append(", ").append(child).append("), ");
+            }
+        });
+        return sb.length() == 0 ? "" : sb.substring(0, sb.length() - 2);
+    }
+
+    /**
+     * @return new merged tree, a copy of the base tree with the instructions applied
+     * */
+    Tree buildTree() {
+        Tree tree = Tree.copyOf(base);
+        List<Integer> keptParents = getKeptParents();
+        for (int root : removals) {
+            tree.removeSubtree(root);
+        }
+        forEachAddition(keptParents, (parent, child) -> {
+            if (parent == null) {
+                tree.addRootNode(child);
+            } else {
+                tree.addNode(parent, child);
+            }
+        });
+        return tree;
+    }
+}
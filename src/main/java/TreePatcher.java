@@ -0,0 +1,263 @@
+package main.java;
+
+import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NodeDoesNotExistException;
+import main.java.exceptions.NotALeafException;
+import main.java.exceptions.ParentDoesNotExistException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Applies transformation instructions to a serialized tree (.tt file) in a single streaming pass,
+ * without deserializing the tree: lines <parent>:<child>,<child>,... are read one by one, removed nodes are dropped,
+ * added nodes (indexed by their parents) are merged into the lines of their parents and the lines of parents
+ * that had no children or are new are appended at the end.
+ * Memory depends only on the size of the instructions and the number of removed nodes, not on the size of the tree.
+ * Both plain (Remove, Add) and compact (RemoveSubtree, AddSubtree) instructions are supported, but only canonical
+ * sequences as produced by {@link TreeTransformer#getTransformations(TreeView, TreeView)}: all the removals come
+ * before all the additions.
+ * Trees with labelled nodes cannot be patched.
+ */
+public class TreePatcher {
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    private final HashSet<Integer> removedLeaves = new HashSet<>(); // Remove(x)
+    private final HashSet<Integer> removedSubtrees = new HashSet<>(); // RemoveSubtree(x) and all their descendants
+    private final HashSet<Integer> missingRemovals = new HashSet<>(); // removed nodes not found in the file yet
+    private final HashMap<Integer, List<Integer>> additions = new HashMap<>(); // parent -> added children
+    private final HashSet<Integer> addedNodes = new HashSet<>();
+    private final HashSet<Integer> existingParents = new HashSet<>(); // parents of additions found in the file
+    private final ArrayDeque<Integer> pendingParents = new ArrayDeque<>(); // new nodes whose lines are appended
+    private int firstParent = -1;
+    private boolean adding;
+
+    private TreePatcher(String transformations) {
+        TreeTransformer.parseTransformations(transformations, (name, node, argument) -> {
+            switch (name) {
+                case "remove", "removesubtree" -> {
+                    if (adding) {
+                        throw new IllegalArgumentException("Only canonical instructions (removals before additions) "
+                                + "can be patched! " + name + "(" + node + ") follows an addition.");
+                    }
+                    (name.equals("remove") ? removedLeaves : removedSubtrees).add(node);
+                    missingRemovals.add(node);
+                }
+                case "add" -> addNode(node, Integer.parseInt(argument));
+                case "addsubtree" -> {
+                    // serialized subtree: <root>;<parent>:<child>,<child>;...
+                    String[] lines = argument.split(";");
+                    addNode(node, Integer.parseInt(lines[0].trim()));
+                    for (int i = 1; i < lines.length; i++) {
+                        String[] parts = lines[i].split(":");
+                        if (parts.length != 2) {
+                            throw new IllegalArgumentException("Invalid subtree: " + argument);
+                        }
+                        int parent = Integer.parseInt(parts[0].trim());
+                        for (String child : parts[1].split(",")) {
+                            if (!child.isBlank()) {
+                                addNode(parent, Integer.parseInt(child.trim()));
+                            }
+                        }
+                    }
+                }
+            }
+        });
+        for (List<Integer> children : additions.values()) {
+            Collections.sort(children);
+        }
+    }
+
+    private void addNode(int parent, int child) {
+        if (!adding) {
+            adding = true;
+            firstParent = parent;
+        }
+        if (!addedNodes.add(child) || child == firstParent) {
+            throw new NodeAlreadyExistsException("Cannot add node: " + child + "! It is already present in the tree!");
+        }
+        additions.computeIfAbsent(parent, key -> new ArrayList<>()).add(child);
+    }
+
+    /**
+     * Patches the serialized tree in place, the file is replaced atomically (see {@link #patch(String, String, String)})
+     * @param path serialized tree (".tt" or ".tt.gz")
+     * @param transformations canonical sequence of instructions
+     * @throws IOException if file operations failed
+     * */
+    public static void patch(String path, String transformations) throws IOException {
+        patch(path, transformations, path);
+    }
+
+    /**
+     * Applies transformation instructions to the serialized tree and writes the result into target
+     * Result is written into a temporary file next to the target first, which then atomically replaces the target,
+     * so the target is never left half written (it stays untouched if patching failed) and keeps its permissions.
+     * @param source serialized tree (".tt" or ".tt.gz")
+     * @param transformations canonical sequence of instructions (removals before additions)
+     * @param target path for the patched tree to be written to (".tt" or ".tt.gz"), may be equal to source
+     * @throws IllegalArgumentException if some file has an incorrect extension, tree has labels
+     * or instructions are invalid or not canonical
+     * @throws NotALeafException if Remove instruction removes a node that still has children
+     * @throws NodeDoesNotExistException if some removed node is not present in the tree
+     * @throws NodeAlreadyExistsException if some added node already exists in the tree
+     * @throws ParentDoesNotExistException if parent of some added node does not exist in the tree
+     * @throws IOException if file operations failed
+     * */
+    public static void patch(String source, String transformations, String target) throws IOException {
+        for (String path : new String[]{source, target}) {
+            if (!TreeFiles.stripCompression(path).endsWith(Tree.EXTENSION)) {
+                throw new IllegalArgumentException("Incorrect file format! Only " + Tree.EXTENSION + " files are supported!");
+            }
+        }
+        TreePatcher patcher = new TreePatcher(transformations);
+        Path targetPath = Path.of(target).toAbsolutePath();
+        // temporary file keeps the compression of the target
+        Path temporary = TreeFiles.createTemporaryFile(targetPath,
+                TEMPORARY_EXTENSION + (TreeFiles.isCompressed(target) ? TreeFiles.GZIP_EXTENSION : ""));
+        try {
+            try (BufferedReader reader = TreeFiles.newReader(source);
+                 Writer writer = TreeFiles.newWriter(temporary.toString())) {
+                patcher.patch(reader, writer);
+            }
+            TreeFiles.replace(temporary, targetPath);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private void patch(BufferedReader reader, Writer writer) throws IOException {
+        String line = reader.readLine();
+        while (line != null && line.isBlank()) {
+            line = reader.readLine();
+        }
+        boolean emptyTree = true;
+        if (line != null) {
+            if (line.startsWith("@")) {
+                throw new IllegalArgumentException("Trees with labelled nodes cannot be patched!");
+            }
+            int root = Integer.parseInt(line.trim());
+            missingRemovals.remove(root);
+            // removed root is checked to be a leaf on its line like any other removed node
+            if (!removedLeaves.contains(root) && !removedSubtrees.contains(root)) {
+                emptyTree = false;
+                checkKeptNode(root);
+                writer.write(String.valueOf(root));
+                writer.write('\n');
+            }
+        }
+        StringBuilder children = new StringBuilder();
+        while ((line = reader.readLine()) != null) {
+            String data = line.strip();
+            if (data.isEmpty()) {
+                continue;
+            }
+            int separator = data.indexOf(':');
+            if (separator == -1) {
+                throw new IllegalArgumentException("Invalid format of data!");
+            }
+            int parent = Integer.parseInt(data.substring(0, separator).trim());
+            boolean removed = removedSubtrees.contains(parent) || removedLeaves.contains(parent);
+            children.setLength(0);
+            List<Integer> added = removed ? null : additions.remove(parent);
+            int next = 0; // next added child to be merged
+            for (String value : data.substring(separator + 1).split(",")) {
+                if (value.isBlank()) {
+                    continue;
+                }
+                int child = Integer.parseInt(value.trim());
+                missingRemovals.remove(child);
+                if (removedSubtrees.contains(parent)) {
+                    removedSubtrees.add(child);
+                } else if (removedLeaves.contains(parent) && !removedLeaves.contains(child)
+                        && !removedSubtrees.contains(child)) {
+                    throw new NotALeafException("Cannot remove node: " + parent + "! It is not a leaf!");
+                } else if (!removed && !removedLeaves.contains(child) && !removedSubtrees.contains(child)) {
+                    checkKeptNode(child);
+                    // children are sorted in both lists, so they are merged
+                    while (added != null && next < added.size() && added.get(next) < child) {
+                        appendAddedChild(children, added.get(next++));
+                    }
+                    appendChild(children, child);
+                }
+            }
+            while (added != null && next < added.size()) {
+                appendAddedChild(children, added.get(next++));
+            }
+            if (children.length() > 0) {
+                writer.write(String.valueOf(parent));
+                writer.write(':');
+                writer.append(children);
+                writer.write('\n');
+            }
+        }
+        if (!missingRemovals.isEmpty()) {
+            throw new NodeDoesNotExistException("Cannot remove node: " + missingRemovals.iterator().next()
+                    + "! It is not present in the tree!");
+        }
+        if (emptyTree && !additions.isEmpty()) {
+            // the first addition creates a new root
+            writer.write(String.valueOf(firstParent));
+            writer.write('\n');
+            pendingParents.add(firstParent);
+        }
+        for (int parent : existingParents) {
+            if (additions.containsKey(parent)) {
+                pendingParents.add(parent);
+            }
+        }
+        // lines of parents have to follow the lines their parents were added in
+        while (!pendingParents.isEmpty()) {
+            int parent = pendingParents.poll();
+            List<Integer> added = additions.remove(parent);
+            if (added == null) {
+                continue;
+            }
+            children.setLength(0);
+            for (int child : added) {
+                appendAddedChild(children, child);
+            }
+            writer.write(String.valueOf(parent));
+            writer.write(':');
+            writer.append(children);
+            writer.write('\n');
+        }
+        if (!additions.isEmpty()) {
+            throw new ParentDoesNotExistException("Cannot add node to : " + additions.keySet().iterator().next()
+                    + "! It is not present in the tree!");
+        }
+    }
+
+    /**
+     * Checks node that stays in the tree against the additions
+     * */
+    private void checkKeptNode(int node) {
+        if (addedNodes.contains(node)) {
+            throw new NodeAlreadyExistsException("Cannot add node: " + node + "! It is already present in the tree!");
+        }
+        if (additions.containsKey(node)) {
+            existingParents.add(node);
+        }
+    }
+
+    private void appendAddedChild(StringBuilder children, int child) {
+        if (additions.containsKey(child)) {
+            pendingParents.add(child);
+        }
+        appendChild(children, child);
+    }
+
+    private static void appendChild(StringBuilder children, int child) {
+        children.append(child).append(',');
+    }
+}
@@ -0,0 +1,228 @@
+package main.java;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publisher of the mutations of a {@link Tree} (see {@link Tree#setPublisher(TreePublisher)}), so that other
+ * components can mirror the tree with an ordered change stream instead of diffing full copies.
+ * Every subscriber gets its own preallocated ring buffer: the mutating thread only writes into the buffers and never
+ * waits for a subscriber, events are delivered in batches (as far as the demand allows) on the executor.
+ * When a subscriber falls behind by more than the buffer size, the {@link OverflowPolicy} decides what happens.
+ * Mutations have to be published from a single thread (the one that modifies the tree, Tree is not thread safe).
+ */
+public class TreePublisher implements Flow.Publisher<TreeEvent> {
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    /**
+     * What happens when the buffer of a subscriber is full
+     */
+    public enum OverflowPolicy {
+        /** new events are dropped and the subscriber gets {@link TreeEvent.Type#RESYNC} once it catches up */
+        DROP_AND_RESYNC,
+        /** subscription is terminated with onError */
+        BOUNDED_BUFFER
+    }
+
+    private static final RingSubscription[] NO_SUBSCRIPTIONS = new RingSubscription[0];
+
+    private final Executor executor;
+    private final int bufferSize;
+    private final OverflowPolicy policy;
+    private volatile RingSubscription[] subscriptions = NO_SUBSCRIPTIONS; // copy on write
+
+    /**
+     * Publisher with the default buffer size, dropping events of slow subscribers, delivering on the common pool
+     * */
+    public TreePublisher() {
+        this(ForkJoinPool.commonPool(), DEFAULT_BUFFER_SIZE, OverflowPolicy.DROP_AND_RESYNC);
+    }
+
+    /**
+     * @param executor executor the events are delivered on
+     * @param bufferSize number of events buffered for every subscriber (rounded up to a power of two)
+     * @param policy what happens when the buffer of a subscriber is full
+     * @throws IllegalArgumentException if bufferSize is not positive or too big
+     * */
+    public TreePublisher(Executor executor, int bufferSize, OverflowPolicy policy) {
+        if (bufferSize < 1 || bufferSize > 1 << 30) {
+            throw new IllegalArgumentException("Buffer size should be between 1 and " + (1 << 30) + "!");
+        }
+        this.executor = executor;
+        int size = 1;
+        while (size < bufferSize) {
+            size <<= 1;
+        }
+        this.bufferSize = size;
+        this.policy = policy;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TreeEvent> subscriber) {
+        RingSubscription subscription = new RingSubscription(subscriber);
+        synchronized (this) {
+            RingSubscription[] current = subscriptions;
+            RingSubscription[] updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = subscription;
+            subscriptions = updated;
+        }
+        // onSubscribe is delivered on the executor as well, so that all the signals are serialized
+        subscription.signal();
+    }
+
+    /**
+     * @return number of active subscribers
+     * */
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    private synchronized void unsubscribe(RingSubscription subscription) {
+        RingSubscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                RingSubscription[] updated = Arrays.copyOf(current, current.length - 1);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the mutation into the buffers of all the subscribers, never blocks
+     * */
+    void publish(TreeEvent.Type type, int parent, int child, long modificationCount) {
+        for (RingSubscription subscription : subscriptions) {
+            subscription.offer(type, parent, child, modificationCount);
+        }
+    }
+
+    /**
+     * Single-producer single-consumer ring buffer of a subscriber, tail is written only by the mutating thread,
+     * head only by the delivery task
+     */
+    private class RingSubscription implements Flow.Subscription, Runnable {
+        private static final TreeEvent.Type[] TYPES = TreeEvent.Type.values();
+
+        private final Flow.Subscriber<? super TreeEvent> subscriber;
+        private final int mask = bufferSize - 1;
+        private final byte[] types = new byte[bufferSize];
+        private final int[] parents = new int[bufferSize];
+        private final int[] children = new int[bufferSize];
+        private final long[] modificationCounts = new long[bufferSize];
+        private final AtomicLong head = new AtomicLong();
+        private final AtomicLong tail = new AtomicLong();
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger pendingSignals = new AtomicInteger(); // > 0 while the delivery task is scheduled
+        private volatile long overflow = -1; // modification count of the first dropped event, -1 if nothing was dropped
+        private volatile Throwable error;
+        private volatile boolean cancelled;
+        private boolean subscribed;
+
+        RingSubscription(Flow.Subscriber<? super TreeEvent> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(TreeEvent.Type type, int parent, int child, long modificationCount) {
+            if (overflow >= 0 || cancelled) {
+                return;
+            }
+            long t = tail.get();
+            if (t - head.get() == bufferSize) {
+                if (policy == OverflowPolicy.BOUNDED_BUFFER) {
+                    error = new IllegalStateException("Subscriber could not keep up, buffer of " + bufferSize
+                            + " events overflowed!");
+                }
+                overflow = modificationCount;
+            } else {
+                int slot = (int) t & mask;
+                types[slot] = (byte) type.ordinal();
+                parents[slot] = parent;
+                children[slot] = child;
+                modificationCounts[slot] = modificationCount;
+                tail.lazySet(t + 1);
+            }
+            signal();
+        }
+
+        void signal() {
+            if (pendingSignals.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                error = new IllegalArgumentException("Requested number of events should be positive!");
+            } else {
+                demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            unsubscribe(this);
+        }
+
+        /**
+         * Delivers buffered events as far as the demand allows
+         * */
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+                long requested = demand.get();
+                long delivered = 0;
+                while (!cancelled) {
+                    if (error != null) {
+                        cancel();
+                        subscriber.onError(error);
+                        return;
+                    }
+                    if (delivered == requested) {
+                        break;
+                    }
+                    // overflow has to be read before the buffer, events written before the overflow are delivered first
+                    long dropped = overflow;
+                    long h = head.get();
+                    if (h == tail.get()) {
+                        if (dropped < 0) {
+                            break;
+                        }
+                        overflow = -1;
+                        subscriber.onNext(new TreeEvent(TreeEvent.Type.RESYNC, -1, -1, dropped));
+                    } else {
+                        int slot = (int) h & mask;
+                        TreeEvent event = new TreeEvent(TYPES[types[slot]], parents[slot], children[slot],
+                                modificationCounts[slot]);
+                        head.lazySet(h + 1);
+                        subscriber.onNext(event);
+                    }
+                    delivered++;
+                }
+                if (cancelled) {
+                    return;
+                }
+                if (delivered > 0 && requested != Long.MAX_VALUE) {
+                    demand.addAndGet(-delivered);
+                }
+                missed = pendingSignals.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,253 @@
+package main.java;
+
+import main.java.Tree.Node;
+import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NotALeafException;
+import main.java.exceptions.ParentDoesNotExistException;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incremental renderer of the interactive mode: mutations return only the lines of the pretty representation
+ * (see {@link Tree#toString()}) that changed instead of the whole tree.
+ * Line of a node depends only on its depth, its label and whether it is the last child, so a mutation changes
+ * at most two lines. Line numbers are not stored, they are ranks computed from sorted children and subtree sizes
+ * (line of a node = line of its parent + 1 + sizes of the subtrees of its preceding siblings).
+ * Sizes of preceding siblings are summed directly for narrow nodes, wide nodes keep prefix sums of the subtree
+ * sizes of their children in a Fenwick tree, so a line is found in O(depth * log(fan-out)). Adding or removing
+ * the last child updates the prefix sums in place, while a child inserted or removed in the middle makes them
+ * rebuilt on the next lookup in O(fan-out) (as the insertion into the children list itself).
+ * Changes are returned as a compact diff, one line per change, applied in the given order:
+ *      +<line> <text> - text is inserted as the line with the number,
+ *      -<line> <text> - line with the number (and text) is removed,
+ *      ~<line> <text> - line with the number is replaced with the text.
+ * Lines are numbered from 1 (the root).
+ */
+public class TreeRenderer {
+    private static final String INDENT = "   ";
+    private static final String MIDDLE = "├──";
+    private static final String LAST = "└──";
+    private static final int MIN_INDEXED_CHILDREN = 32; // narrower nodes have their siblings summed directly
+
+    private Tree tree;
+    private final Map<Node, ChildSizes> childSizes = new HashMap<>(); // built on the first lookup
+
+    /**
+     * @param tree tree to be rendered, it has to be modified only through the renderer
+     * */
+    public TreeRenderer(Tree tree) {
+        this.tree = tree;
+    }
+
+    public Tree getTree() {
+        return tree;
+    }
+
+    /**
+     * @return full pretty representation of the tree
+     * */
+    public String render() {
+        return tree.toString();
+    }
+
+    /**
+     * Replaces the rendered tree (e.g. after LOAD)
+     * @param tree new tree to be rendered
+     * @return full pretty representation of the new tree
+     * */
+    public String load(Tree tree) {
+        this.tree = tree;
+        childSizes.clear();
+        return render();
+    }
+
+    /**
+     * Adds node to the tree (see {@link Tree#addNode(int, int)})
+     * @param parentIndex index of the parent node
+     * @param childIndex index of the child node to be added
+     * @return changed lines (see class description)
+     * @throws NodeAlreadyExistsException if node with childIndex already exists in the tree
+     * @throws ParentDoesNotExistException if node with parentIndex doesn't exist in the tree
+     * */
+    public String addNode(int parentIndex, int childIndex) throws NodeAlreadyExistsException, ParentDoesNotExistException {
+        boolean empty = tree.isEmpty();
+        Node child = tree.addNode(parentIndex, childIndex);
+        StringBuilder diff = new StringBuilder();
+        if (empty) {
+            appendChange(diff, '+', 1, tree.getRoot());
+        }
+        List<Node> siblings = child.getParent().getChildren();
+        int position = child.getParent().findChild(childIndex);
+        ChildSizes sizes = childSizes.get(child.getParent());
+        if (sizes != null) {
+            if (position == siblings.size() - 1) {
+                sizes.append(1);
+            } else {
+                childSizes.remove(child.getParent());
+            }
+        }
+        updateAncestors(child.getParent(), 1);
+        if (position > 0 && position == siblings.size() - 1) {
+            // previous last child gets a middle connector
+            Node previous = siblings.get(position - 1);
+            appendChange(diff, '~', getLine(previous), previous);
+        }
+        appendChange(diff, '+', getLine(child), child);
+        return diff.toString();
+    }
+
+    /**
+     * Removes leaf from the tree (see {@link Tree#removeNode(int)})
+     * @param index index of the leaf to be removed
+     * @return changed lines (see class description)
+     * @throws NotALeafException if node with index is not a leaf or is not presented in the tree
+     * */
+    public String removeNode(int index) throws NotALeafException {
+        Node node = tree.getNode(index);
+        if (node == null || !node.getChildren().isEmpty()) {
+            // fails with the same exception as the tree
+            tree.removeNode(index);
+        }
+        StringBuilder diff = new StringBuilder();
+        int line = getLine(node);
+        String text = getText(node);
+        Node previous = null;
+        Node parent = node.getParent();
+        if (parent != null) {
+            List<Node> siblings = parent.getChildren();
+            int position = parent.findChild(index);
+            if (position > 0 && position == siblings.size() - 1) {
+                previous = siblings.get(position - 1);
+            }
+            ChildSizes sizes = childSizes.get(parent);
+            if (sizes != null) {
+                if (position == siblings.size() - 1) {
+                    sizes.removeLast();
+                } else {
+                    childSizes.remove(parent);
+                }
+            }
+        }
+        tree.removeNode(index);
+        childSizes.remove(node);
+        updateAncestors(parent, -1);
+        diff.append('-').append(line).append(' ').append(text).append('\n');
+        if (previous != null) {
+            // new last child gets a last connector
+            appendChange(diff, '~', getLine(previous), previous);
+        }
+        return diff.toString();
+    }
+
+    /**
+     * Returns line number of the node in the pretty representation
+     * @param node node of the rendered tree
+     * @return line number (root is 1)
+     * */
+    private int getLine(Node node) {
+        int line = 1;
+        for (Node current = node; current.getParent() != null; current = current.getParent()) {
+            Node parent = current.getParent();
+            line++;
+            if (parent.getChildren().size() < MIN_INDEXED_CHILDREN && !childSizes.containsKey(parent)) {
+                for (Node sibling : parent.getChildren()) {
+                    if (sibling == current) {
+                        break;
+                    }
+                    line += sibling.getSubtreeSize();
+                }
+            } else {
+                line += childSizes.computeIfAbsent(parent, ChildSizes::new).sum(parent.findChild(current.getIndex()));
+            }
+        }
+        return line;
+    }
+
+    /**
+     * Adds delta to the prefix sums that contain subtree sizes of the node and its ancestors
+     * */
+    private void updateAncestors(Node node, int delta) {
+        if (childSizes.isEmpty()) {
+            return;
+        }
+        for (Node current = node; current != null && current.getParent() != null; current = current.getParent()) {
+            ChildSizes sizes = childSizes.get(current.getParent());
+            if (sizes != null) {
+                sizes.add(current.getParent().findChild(current.getIndex()), delta);
+            }
+        }
+    }
+
+    /**
+     * Returns the line of the node exactly as {@link Tree#toString()} renders it
+     * */
+    private static String getText(Node node) {
+        int depth = 0;
+        for (Node current = node.getParent(); current != null; current = current.getParent()) {
+            depth++;
+        }
+        Node parent = node.getParent();
+        boolean last = parent == null || parent.getChildren().get(parent.getChildren().size() - 1) == node;
+        return INDENT.repeat(depth) + (last ? LAST : MIDDLE) + node.getIndex();
+    }
+
+    private static void appendChange(StringBuilder diff, char change, int line, Node node) {
+        diff.append(change).append(line).append(' ').append(getText(node)).append('\n');
+    }
+
+    /**
+     * Prefix sums of the subtree sizes of the children of a node (Fenwick tree over the positions of the children)
+     * */
+    private static class ChildSizes {
+        private int[] sums; // sums[i] is the sum of the sizes of the children (i - lowest bit of i, i] (1-based)
+        private int size;
+
+        /**
+         * Builds the prefix sums in O(fan-out)
+         * */
+        ChildSizes(Node node) {
+            List<Node> children = node.getChildren();
+            size = children.size();
+            sums = new int[size + 1];
+            for (int i = 1; i <= size; i++) {
+                sums[i] += children.get(i - 1).getSubtreeSize();
+                int next = i + (i & -i);
+                if (next <= size) {
+                    sums[next] += sums[i];
+                }
+            }
+        }
+
+        /**
+         * @return sum of the subtree sizes of the children before the position
+         * */
+        int sum(int position) {
+            int sum = 0;
+            for (int i = position; i > 0; i -= i & -i) {
+                sum += sums[i];
+            }
+            return sum;
+        }
+
+        void add(int position, int delta) {
+            for (int i = position + 1; i <= size; i += i & -i) {
+                sums[i] += delta;
+            }
+        }
+
+        void append(int subtreeSize) {
+            size++;
+            if (size == sums.length) {
+                sums = Arrays.copyOf(sums, 2 * size);
+            }
+            sums[size] = subtreeSize + sum(size - 1) - sum(size - (size & -size));
+        }
+
+        void removeLast() {
+            size--;
+        }
+    }
+}
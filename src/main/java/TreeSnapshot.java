@@ -0,0 +1,285 @@
+package main.java;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Read-only tree view over a memory-mapped binary snapshot file, designed for random access:
+ * opening a snapshot only maps the file (nothing is parsed or copied to the heap), nodes are read lazily
+ * straight from the mapping and several processes can share the same file through the page cache.
+ * Snapshot layout (little endian):
+ *      header: magic, version, node count, reserved
+ *      node records in BFS order: index, parent record, first child record, child count
+ *      (children of every node are consecutive records sorted by index, so the first child record
+ *      is the offset of the node's child table)
+ *      id index: (index, record) entries sorted by index, a node is found by binary search
+ * Snapshot can be read by several threads at once, it is {@link #close() closed} after use (when no thread reads it
+ * anymore), any access afterwards results in an {@link IllegalStateException}.
+ * Snapshots are written with {@link #write(TreeView, Path)}.
+ */
+public class TreeSnapshot implements TreeView, Closeable {
+    public static final String EXTENSION = ".tts";
+    private static final int MAGIC = 0x54545331; // "TTS1"
+    private static final int VERSION = 1;
+    private static final int NONE = -1;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+
+    // header fields (byte offsets)
+    private static final int VERSION_FIELD = 4;
+    private static final int SIZE = 8;
+    private static final int HEADER_BYTES = 16;
+
+    // record fields (byte offsets inside of a record)
+    private static final int INDEX = 0;
+    private static final int PARENT = 4;
+    private static final int FIRST_CHILD = 8;
+    private static final int CHILD_COUNT = 12;
+    private static final int RECORD_BYTES = 16;
+
+    // id index entry: node index, record
+    private static final int ENTRY_BYTES = 8;
+    // every region is mapped as a single buffer (at most Integer.MAX_VALUE bytes), so offsets fit into int
+    private static final int MAX_SIZE = Integer.MAX_VALUE / RECORD_BYTES;
+
+    private final FileChannel channel;
+    private final int size;
+    private ByteBuffer records;
+    private ByteBuffer entries;
+    // last looked up node as (index << 32 | record), consecutive lookups mostly hit the same node;
+    // a single volatile field, so that readers sharing the snapshot never see an index with the record of another node
+    private volatile long lastLookup = NONE;
+
+    private TreeSnapshot(FileChannel channel, int size, ByteBuffer records, ByteBuffer entries) {
+        this.channel = channel;
+        this.size = size;
+        this.records = records;
+        this.entries = entries;
+    }
+
+    /**
+     * Opens a snapshot without reading it, nodes are read on demand from the mapped file
+     * @param path snapshot file
+     * @return read-only view of the tree stored in the snapshot
+     * @throws IllegalArgumentException if file does not contain a snapshot
+     * @throws IOException if file operations failed
+     * */
+    public static TreeSnapshot open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IllegalArgumentException("Incorrect file format! " + path + " does not contain a snapshot!");
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int size = header.getInt(SIZE);
+            long recordBytes = (long) size * RECORD_BYTES, entryBytes = (long) size * ENTRY_BYTES;
+            if (header.getInt(0) != MAGIC || header.getInt(VERSION_FIELD) != VERSION || size < 0 || size > MAX_SIZE
+                    || channel.size() != HEADER_BYTES + recordBytes + entryBytes) {
+                throw new IllegalArgumentException("Incorrect file format! " + path + " does not contain a snapshot!");
+            }
+            ByteBuffer records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, recordBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer entries = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES + recordBytes, entryBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            return new TreeSnapshot(channel, size, records, entries);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes snapshot of any tree into the file
+     * Snapshot is written into a temporary file first and then moved onto the path, so processes that
+     * have the previous snapshot opened keep reading a consistent (old) version.
+     * @param tree tree to be written
+     * @param path snapshot file (existing file is replaced)
+     * @throws IllegalArgumentException if tree is too big for a snapshot (more than Integer.MAX_VALUE / 16 nodes)
+     * @throws IOException if file operations failed
+     * */
+    public static void write(TreeView tree, Path path) throws IOException {
+        int size = tree.size();
+        if (size > MAX_SIZE) {
+            throw new IllegalArgumentException("Tree is too big for a snapshot!");
+        }
+        // BFS order: order[record] = node index, children of a record are appended as one block
+        int[] order = new int[size];
+        int[] parents = new int[size];
+        long[] entries = new long[size];
+        Path temporary = TreeFiles.createTemporaryFile(path, TEMPORARY_EXTENSION);
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(0);
+                int next = 0;
+                if (size > 0) {
+                    order[next] = tree.getRootIndex();
+                    parents[next++] = NONE;
+                }
+                for (int record = 0; record < next; record++) {
+                    int index = order[record];
+                    int childCount = tree.getChildCount(index);
+                    int firstChild = next;
+                    for (int i = 0; i < childCount; i++) {
+                        order[next] = tree.getChild(index, i);
+                        parents[next++] = record;
+                    }
+                    if (buffer.remaining() < RECORD_BYTES) {
+                        flush(buffer, channel);
+                    }
+                    buffer.putInt(index).putInt(parents[record]).putInt(firstChild).putInt(childCount);
+                    // sorting (index, record) pairs as longs sorts them by index (record is never negative)
+                    entries[record] = ((long) index << 32) | record;
+                }
+                Arrays.sort(entries);
+                for (long entry : entries) {
+                    if (buffer.remaining() < ENTRY_BYTES) {
+                        flush(buffer, channel);
+                    }
+                    buffer.putInt((int) (entry >> 32)).putInt((int) entry);
+                }
+                flush(buffer, channel);
+                channel.force(false);
+            }
+            TreeFiles.replace(temporary, path);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private ByteBuffer records() {
+        if (records == null) {
+            throw new IllegalStateException("Tree is already closed!");
+        }
+        return records;
+    }
+
+    private int get(int record, int field) {
+        return records().getInt(record * RECORD_BYTES + field);
+    }
+
+    /**
+     * Binary search of the node in the id index
+     * @return record of the node, NONE if node is not present
+     * */
+    private int findRecord(int index) {
+        long last = lastLookup;
+        // records are never negative, NONE is never a hit
+        if ((int) last != NONE && (int) (last >> 32) == index) {
+            return (int) last;
+        }
+        records();
+        int low = 0, high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleIndex = entries.getInt(middle * ENTRY_BYTES);
+            if (middleIndex < index) {
+                low = middle + 1;
+            } else if (middleIndex > index) {
+                high = middle - 1;
+            } else {
+                int record = entries.getInt(middle * ENTRY_BYTES + 4);
+                lastLookup = ((long) index << 32) | record;
+                return record;
+            }
+        }
+        return NONE;
+    }
+
+    private int getExistingRecord(int index) {
+        int record = findRecord(index);
+        if (record == NONE) {
+            throw new IllegalArgumentException("Node " + index + " is not present in the tree!");
+        }
+        return record;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        records();
+        return size == 0;
+    }
+
+    @Override
+    public int getRootIndex() {
+        if (isEmpty()) {
+            throw new IllegalStateException("Tree is empty!");
+        }
+        return get(0, INDEX);
+    }
+
+    @Override
+    public int size() {
+        records();
+        return size;
+    }
+
+    @Override
+    public boolean containsNode(int index) {
+        return findRecord(index) != NONE;
+    }
+
+    @Override
+    public int getChildCount(int index) {
+        return get(getExistingRecord(index), CHILD_COUNT);
+    }
+
+    @Override
+    public int getChild(int index, int position) {
+        int record = getExistingRecord(index);
+        if (position < 0 || position >= get(record, CHILD_COUNT)) {
+            throw new IndexOutOfBoundsException("Node " + index + " has no child at position " + position);
+        }
+        return get(get(record, FIRST_CHILD) + position, INDEX);
+    }
+
+    /**
+     * @param index index of the node
+     * @return index of the parent of the node, null for the root
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    public Integer getParent(int index) {
+        int parent = get(getExistingRecord(index), PARENT);
+        return parent == NONE ? null : get(parent, INDEX);
+    }
+
+    /**
+     * Snapshots are immutable
+     * @return always 0
+     * */
+    @Override
+    public long getModificationCount() {
+        return 0;
+    }
+
+    /**
+     * Unmaps the snapshot (mapping is released as soon as buffers are collected)
+     * @throws IOException if file operations failed
+     * */
+    @Override
+    public void close() throws IOException {
+        if (records == null) {
+            return;
+        }
+        records = null;
+        entries = null;
+        channel.close();
+    }
+}
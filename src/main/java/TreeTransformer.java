@@ -2,35 +2,64 @@ package main.java;
 
 import main.java.Tree.Node;
 import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NodeDoesNotExistException;
 import main.java.exceptions.NotALeafException;
+import main.java.exceptions.OperationCancelledException;
 import main.java.exceptions.ParentDoesNotExistException;
 
 import java.io.*;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 public class TreeTransformer {
     private static final String exitCommand = "exit";
     private static final String instructionHelpMessage =
                     """
                     Tree Transformer supports the following commands:
-                    ADD(<int: parent_index>, <int: child_index>), REMOVE(<int: leaf index>), SAVE <filename>.tt, LOAD <filename>.tt, EXIT
+                    ADD(<int: parent_index>, <int: child_index>), REMOVE(<int: leaf index>), SAVE <filename>.tt(.gz)?, LOAD <filename>.tt(.gz)?, EXIT
                     Please enter your command:""";
     private static final String helpMessage =
             """
             Usage:
-            ./TreeTransformer.jar (<file1> <file2>)? (-h|--help)?
+            ./TreeTransformer.jar (<file1> <file2> (-o <output>)? (--memory <megabytes>)? (--trees)? (--labels)? (--compact)?)? (-h|--help)?
             Provide file1 and file2 to calculate list of transformations needed to be performed on a tree defined in file1
             in order for it to become equal to tree defined in file2.
+            -o to write transformations into the output file instead of printing them.
+            --memory to compute transformations out-of-core (for trees that do not fit into the heap),
+            using at most the given number of megabytes for sorting and temporary files for the rest.
+            --trees to print both trees before the transformations.
+            --labels to allow arbitrary node labels (e.g. UUIDs, paths or 64-bit numbers) instead of int indexes
+            (such trees are always compared in memory).
+            --compact to write every removed or created subtree as a single RemoveSubtree(<root>) or
+            AddSubtree(<parent>, <root>;<parent>:<child>,<child>;...) instruction (ignored with --memory and --labels).
+            Files ending with .gz are read and written gzip compressed.
+            Files ending with .tts are read-only snapshots (see generate), they are mapped into memory without parsing.
             Trees in files should be defined as a list of edges with parent node on left and child - on right side:
             [parent, child][parent, child][parent, child]
             E.g.: [1,2][1,3][2,4]
             In case file1 and file2 are not provided, an interactive mode will be run, in which you can make create
             tree in the runtime. All necessary commands for interactive mode will be displayed upon running it.
+            ./TreeTransformer.jar generate <shape> <size> <output> (--fan-out <k>)? (--seed <seed>)? (--mutate <ratio> <output2>)?
+            generates a tree of the shape (k-ary, random, power-law or chain) with the given number of nodes into output
+            (.tt(.gz) for a serialized tree, .bin for a binary off-heap tree, .tts for a read-only snapshot,
+            edge list otherwise).
+            --mutate additionally writes a mutated copy of the tree into output2, trees differ in about ratio * size
+            transformations (e.g. 0.01).
+            ./TreeTransformer.jar loadtest <shape> <size> <commands> (--fan-out <k>)? (--seed <seed>)?
+            replays the given number of random ADD/REMOVE commands against the interactive mode on a generated tree
+            and reports throughput and latency percentiles.
+            ./TreeTransformer.jar patch <tree.tt> <transformations> (-o <output>)?
+            applies transformations (e.g. written with -o, plain or --compact) to the serialized tree in one streaming pass
+            without loading the tree, the tree file is replaced atomically unless output (.tt(.gz)) is given.
+            Transformations have to remove nodes before adding them, as computed by the program.
+            ./TreeTransformer.jar merge <base> <ours> <theirs> (-o <output>)?
+            merges changes of trees ours and theirs made concurrently to the tree base and prints transformations
+            of base into the merged tree, conflicting changes are left out and reported. -o to also write the merged tree
+            (format is chosen by the extension as for generate).
             -h or --help to print out usage.
             """;
     private static final String interactiveGreet = "Welcome to the interactive mode of Tree Transformer!";
@@ -81,78 +110,406 @@ public class TreeTransformer {
         return sb.toString();
     }
 
+    /**
+     * Appends a sequence of remove instructions for the subtree including removal of the root
+     * @param tree tree that contains the subtree
+     * @param root index of the node from which all children will be removed (root will also be removed)
+     * @param sb accumulator of the instructions (with a trailing comma!)
+     * e.g.: Remove(1), Remove(2), Remove(3),
+     * */
+    public static void removeSubtree(TreeView tree, int root, StringBuilder sb) {
+        removeSubtree(tree, root, sb, null, new CancellationToken.Progress(null, -1));
+    }
+
+    private static void removeSubtree(TreeView tree, int root, StringBuilder sb, NodeDictionary dictionary,
+                                      CancellationToken.Progress progress) {
+        // remove bottom-up
+        for (Integer index : Tree.getPostOrder(tree, root)) {
+            sb.append("Remove(");
+            NodeDictionary.appendLabel(dictionary, index, sb);
+            sb.append("), ");
+            progress.step();
+        }
+    }
+
+    /**
+     * Appends a sequence of create instructions for all the nodes below root (root itself is not created)
+     * @param tree tree that contains the subtree
+     * @param root index of the node whose subtree will be created
+     * @param sb accumulator of the instructions (with a trailing comma!)
+     * e.g.: Add(1, 2), Add(1, 3), Add(2, 3),
+     * */
+    public static void createSubtree(TreeView tree, int root, StringBuilder sb) {
+        createSubtree(tree, root, sb, null, new CancellationToken.Progress(null, -1));
+    }
+
+    private static void createSubtree(TreeView tree, int root, StringBuilder sb, NodeDictionary dictionary,
+                                      CancellationToken.Progress progress) {
+        // add top-down
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int childCount = tree.getChildCount(current);
+            for (int i = 0; i < childCount; i++) {
+                int child = tree.getChild(current, i);
+                appendAdd(current, child, sb, dictionary);
+                queue.add(child);
+                progress.step();
+            }
+        }
+    }
+
     /**
      * Function returns transformations that need to be performed on the givenTree in order to get desiredTree
      * Transformations are in form ADD(<ParentID>, <ChildID>) and Remove(<LeafID>)
+     * Works for any {@link TreeView}, so both trees may come from different storages.
+     * The sequence is a minimal one (under any non-negative cost of Add and Remove instructions):
+     * node indexes are unique and nodes can neither be renamed nor moved, only leaves can be removed and
+     * the root can only be replaced in an empty tree. So a node can stay in place only if its whole path from
+     * the root is the same in both trees, every other node of the given tree has to be removed and every other
+     * node of the desired tree has to be added once. The top-down matching keeps exactly all such nodes,
+     * so no tree edit distance search can produce a cheaper sequence.
      * @param givenTree tree from which transformations should take place
      * @param desiredTree tree to which given tree should be transformed
      * @return a sequence of transformation instructions (without a trailing comma)
      * E.g.: Remove(6), Remove(3), ADD(1, 6)
      * */
-    public static String getTransformations(Tree givenTree, Tree desiredTree) {
-        // handling edge cases with empty trees
-        if (givenTree == null && desiredTree == null) {
-            // empty to empty requires no transformations
-            return "";
-        } else if (givenTree == null) {
-            // empty to non-empty needs to create the whole tree
-            return createSubtree(desiredTree.getRoot(), null);
-        } else if (desiredTree == null) {
-            // non-empty to empty needs to remove the whole tree
-            return removeSubtree(givenTree.getRoot());
-        }
+    public static String getTransformations(TreeView givenTree, TreeView desiredTree) {
+        return getTransformations(givenTree, desiredTree, null);
+    }
+
+    /**
+     * Same as {@link #getTransformations(TreeView, TreeView)} for trees with labelled nodes,
+     * labels are decoded only while instructions are written
+     * @param givenTree tree from which transformations should take place
+     * @param desiredTree tree to which given tree should be transformed
+     * @param dictionary dictionary labels of both trees are encoded with, null to write plain indexes
+     * @return a sequence of transformation instructions (without a trailing comma)
+     * E.g.: Remove(a/b), Add(a, a/c)
+     * */
+    public static String getTransformations(TreeView givenTree, TreeView desiredTree, NodeDictionary dictionary) {
+        return getTransformations(givenTree, desiredTree, dictionary, null);
+    }
+
+    /**
+     * Same as {@link #getTransformations(TreeView, TreeView, NodeDictionary)}, but can be stopped with the token
+     * Progress is measured in nodes of both trees (each node is either kept, removed or added).
+     * @param givenTree tree from which transformations should take place
+     * @param desiredTree tree to which given tree should be transformed
+     * @param dictionary dictionary labels of both trees are encoded with, null to write plain indexes
+     * @param token token to stop the computation with, null if computation cannot be stopped
+     * @return a sequence of transformation instructions (without a trailing comma)
+     * @throws OperationCancelledException if token was cancelled or its time budget ran out,
+     * partial result of the exception is a valid prefix of the instructions: the removals found so far
+     * (additions come after all the removals, so none of them can be part of a prefix)
+     * */
+    public static String getTransformations(TreeView givenTree, TreeView desiredTree, NodeDictionary dictionary,
+                                            CancellationToken token) {
+        return getTransformations(givenTree, desiredTree, dictionary, token, false);
+    }
+
+    /**
+     * Returns the same transformations as {@link #getTransformations(TreeView, TreeView)} in a compact form:
+     * every removed subtree is a single RemoveSubtree(<RootID>) instruction and every created subtree is a single
+     * AddSubtree(<ParentID>, <serialized subtree>) instruction, so the size of the output depends on the number of
+     * changed subtrees instead of removed nodes. Subtree is serialized as in .tt files (see {@link Tree#getTreeData(TreeView)})
+     * with lines separated by ';' instead of new lines: <root>;<parent>:<child>,<child>;<parent>:<child>...
+     * Single leaves are still removed and added with Remove and Add instructions.
+     * Instructions can be executed with {@link #applyTransformations(Tree, String)}.
+     * @param givenTree tree from which transformations should take place
+     * @param desiredTree tree to which given tree should be transformed
+     * @return a sequence of compact transformation instructions (without a trailing comma)
+     * E.g.: RemoveSubtree(6), Remove(3), AddSubtree(1, 6;6:7,8;8:9), Add(1, 10)
+     * */
+    public static String getCompactTransformations(TreeView givenTree, TreeView desiredTree) {
+        return getCompactTransformations(givenTree, desiredTree, null);
+    }
+
+    /**
+     * Same as {@link #getCompactTransformations(TreeView, TreeView)}, but can be stopped with the token
+     * @param givenTree tree from which transformations should take place
+     * @param desiredTree tree to which given tree should be transformed
+     * @param token token to stop the computation with, null if computation cannot be stopped
+     * @return a sequence of compact transformation instructions (without a trailing comma)
+     * @throws OperationCancelledException if token was cancelled or its time budget ran out,
+     * partial result of the exception is a valid prefix of the instructions (the removals found so far)
+     * */
+    public static String getCompactTransformations(TreeView givenTree, TreeView desiredTree, CancellationToken token) {
+        return getTransformations(givenTree, desiredTree, null, token, true);
+    }
 
+    private static String getTransformations(TreeView givenTree, TreeView desiredTree, NodeDictionary dictionary,
+                                             CancellationToken token, boolean compact) {
         StringBuilder transformation = new StringBuilder();
         StringBuilder additionBuffer = new StringBuilder();
-        if (desiredTree.getRoot() == null
-                || givenTree.getRoot() == null
-                || (givenTree.getRoot().getIndex() != desiredTree.getRoot().getIndex())) {
-            // if roots are different there is no way of making same tree without rebuilding it completely
-            transformation.append(removeSubtree(givenTree.getRoot()));
-            transformation.append(createSubtree(desiredTree.getRoot(), null));
-            return transformation.toString();
-        }
-        // given and desired nodes are a tuple of nodes with same index being children of parent with same index
-        Node givenNode, desiredNode;
-        Queue<Map.Entry<Node, Node>> queue = new ArrayDeque<>();
-        queue.add(new AbstractMap.SimpleImmutableEntry<>(desiredTree.getRoot(), givenTree.getRoot()));
+        // handling edge cases with empty trees (null is the same as an empty tree)
+        boolean givenEmpty = givenTree == null || givenTree.isEmpty();
+        boolean desiredEmpty = desiredTree == null || desiredTree.isEmpty();
+        long total = (givenEmpty ? 0 : givenTree.size()) + (desiredEmpty ? 0 : desiredTree.size());
+        CancellationToken.Progress progress = new CancellationToken.Progress(token, total);
+        try {
+            progress.start();
+            if (givenEmpty || desiredEmpty || givenTree.getRootIndex() != desiredTree.getRootIndex()) {
+                // if roots are different there is no way of making same tree without rebuilding it completely
+                if (!givenEmpty && compact) {
+                    appendRemoveSubtree(givenTree, givenTree.getRootIndex(), transformation, progress);
+                } else if (!givenEmpty) {
+                    removeSubtree(givenTree, givenTree.getRootIndex(), transformation, dictionary, progress);
+                }
+                if (!desiredEmpty) {
+                    int root = desiredTree.getRootIndex();
+                    progress.step();
+                    if (compact) {
+                        // the first instruction creates the root together with its child
+                        int childCount = desiredTree.getChildCount(root);
+                        for (int i = 0; i < childCount; i++) {
+                            appendAddSubtree(desiredTree, root, desiredTree.getChild(root, i), transformation, progress);
+                        }
+                    } else {
+                        createSubtree(desiredTree, root, transformation, dictionary, progress);
+                    }
+                }
+            } else {
+                // matched nodes have same index and are children of parents with same index in both trees
+                ArrayDeque<Integer> queue = new ArrayDeque<>();
+                queue.add(givenTree.getRootIndex());
+                progress.step();
+                progress.step();
+                while (!queue.isEmpty()) {
+                    int node = queue.poll();
+                    // children are sorted by index in both trees, so they are matched by a linear merge
+                    int givenChildCount = givenTree.getChildCount(node);
+                    int desiredChildCount = desiredTree.getChildCount(node);
+                    int i = 0, j = 0;
+                    while (i < givenChildCount || j < desiredChildCount) {
+                        int givenChild = i < givenChildCount ? givenTree.getChild(node, i) : 0;
+                        int desiredChild = j < desiredChildCount ? desiredTree.getChild(node, j) : 0;
+                        if (j == desiredChildCount || (i < givenChildCount && givenChild < desiredChild)) {
+                            // node in given tree should not be in the desired tree
+                            // whole subtree needs to be removed
+                            if (compact) {
+                                appendRemoveSubtree(givenTree, givenChild, transformation, progress);
+                            } else {
+                                removeSubtree(givenTree, givenChild, transformation, dictionary, progress);
+                            }
+                            i++;
+                        } else if (i == givenChildCount || givenChild > desiredChild) {
+                            // create subtrees that are not present in givenSubtree
+                            // add it to buffer to have no concurrency of remove/delete
+                            if (compact) {
+                                appendAddSubtree(desiredTree, node, desiredChild, additionBuffer, progress);
+                            } else {
+                                appendAdd(node, desiredChild, additionBuffer, dictionary);
+                                progress.step();
+                                createSubtree(desiredTree, desiredChild, additionBuffer, dictionary, progress);
+                            }
+                            j++;
+                        } else {
+                            // node in given tree is presented in desired one and we can add it to queue
+                            // we don't need to additionally create this node, it's already in the given tree
+                            queue.add(givenChild);
+                            progress.step();
+                            progress.step();
+                            i++;
+                            j++;
+                        }
+                    }
+                }
+            }
+        } catch (OperationCancelledException e) {
+            // buffered additions may depend on removals that were not found yet, only removals form a prefix
+            throw new OperationCancelledException(e.getMessage(), joinInstructions(transformation, new StringBuilder()),
+                    e.getDone(), e.getTotal());
+        }
+        progress.finish();
+        return joinInstructions(transformation, additionBuffer);
+    }
+
+    /**
+     * Returns exact numbers of Remove and Add instructions that {@link #getTransformations(TreeView, TreeView)}
+     * would produce, without building them. Only kept nodes are visited: every removed or created subtree
+     * is counted by its size, which is O(1) for {@link Tree} (sizes are maintained on every modification).
+     * @param givenTree tree from which transformations should take place
+     * @param desiredTree tree to which given tree should be transformed
+     * @return numbers of Remove and Add instructions
+     * */
+    public static TransformationEstimate estimateTransformations(TreeView givenTree, TreeView desiredTree) {
+        boolean givenEmpty = givenTree == null || givenTree.isEmpty();
+        boolean desiredEmpty = desiredTree == null || desiredTree.isEmpty();
+        if (givenEmpty || desiredEmpty || givenTree.getRootIndex() != desiredTree.getRootIndex()) {
+            // whole tree is rebuilt, the first Add instruction creates the root together with its child
+            return new TransformationEstimate(givenEmpty ? 0 : givenTree.size(),
+                    desiredEmpty ? 0 : desiredTree.size() - 1);
+        }
+        int removeCount = 0, addCount = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(givenTree.getRootIndex());
         while (!queue.isEmpty()) {
-            Map.Entry<Node, Node> desiredToGivenNodes = queue.poll();
-            desiredNode = desiredToGivenNodes.getKey();
-            givenNode = desiredToGivenNodes.getValue();
-            // indexes of children of desired node
-            HashMap<Integer, Node> desiredIndexesOfChildren = new HashMap<>();
-            for (Node child : desiredNode.getChildren()) {
-                desiredIndexesOfChildren.put(child.getIndex(), child);
-            }
-            for (Node child : givenNode.getChildren()) {
-                if (!desiredIndexesOfChildren.containsKey(child.getIndex())) {
-                    // node in given tree should not be in the desired tree
-                    // whole subtree needs to be removed
-                    transformation.append(removeSubtree(child));
+            int node = queue.poll();
+            int givenChildCount = givenTree.getChildCount(node);
+            int desiredChildCount = desiredTree.getChildCount(node);
+            int i = 0, j = 0;
+            while (i < givenChildCount || j < desiredChildCount) {
+                int givenChild = i < givenChildCount ? givenTree.getChild(node, i) : 0;
+                int desiredChild = j < desiredChildCount ? desiredTree.getChild(node, j) : 0;
+                if (j == desiredChildCount || (i < givenChildCount && givenChild < desiredChild)) {
+                    removeCount += givenTree.getSubtreeSize(givenChild);
+                    i++;
+                } else if (i == givenChildCount || givenChild > desiredChild) {
+                    addCount += desiredTree.getSubtreeSize(desiredChild);
+                    j++;
                 } else {
-                    // node in given tree is presented in desired one and we can add it to queue
-                    queue.add(new AbstractMap.SimpleImmutableEntry<>(desiredIndexesOfChildren.get(child.getIndex()), child));
-                    // we don't need to additionally create this node, it's already in the given tree
-                    desiredIndexesOfChildren.remove(child.getIndex());
+                    queue.add(givenChild);
+                    i++;
+                    j++;
                 }
             }
-            for (Map.Entry<Integer, Node> childEntry : desiredIndexesOfChildren.entrySet()) {
-                // create subtrees that are left in map (i.e. are not present in givenSubtree)
-                // add it to buffer to have no concurrency of remove/delete
-                additionBuffer.append(createSubtree(childEntry.getValue(), desiredNode));
-            }
         }
+        return new TransformationEstimate(removeCount, addCount);
+    }
+
+    /**
+     * Appends additions to removals and removes last ", " from the sequence
+     * */
+    private static String joinInstructions(StringBuilder transformation, StringBuilder additionBuffer) {
         transformation.append(additionBuffer);
-        // remove last ", " from string
         if (transformation.length() > 2) {
             transformation.setLength(transformation.length() - 2);
         }
         return transformation.toString();
     }
 
+    /**
+     * Appends Add(parent, child) instruction (with a trailing comma!)
+     * */
+    private static void appendAdd(int parent, int child, StringBuilder sb, NodeDictionary dictionary) {
+        sb.append("Add(");
+        NodeDictionary.appendLabel(dictionary, parent, sb);
+        sb.append(", ");
+        NodeDictionary.appendLabel(dictionary, child, sb);
+        sb.append("), ");
+    }
+
+    /**
+     * Appends RemoveSubtree(root) instruction (Remove(root) for a leaf), with a trailing comma
+     * */
+    private static void appendRemoveSubtree(TreeView tree, int root, StringBuilder sb, CancellationToken.Progress progress) {
+        if (tree.getChildCount(root) == 0) {
+            sb.append("Remove(").append(root).append("), ");
+            progress.step();
+        } else {
+            sb.append("RemoveSubtree(").append(root).append("), ");
+            progress.step(tree.getSubtreeSize(root));
+        }
+    }
+
+    /**
+     * Appends AddSubtree(parent, serialized subtree) instruction (Add(parent, root) for a leaf), with a trailing comma
+     * */
+    private static void appendAddSubtree(TreeView tree, int parent, int root, StringBuilder sb,
+                                         CancellationToken.Progress progress) {
+        progress.step();
+        if (tree.getChildCount(root) == 0) {
+            appendAdd(parent, root, sb, null);
+            return;
+        }
+        sb.append("AddSubtree(").append(parent).append(", ").append(root);
+        // same order as in .tt files: parents top-down
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(root);
+        while (!queue.isEmpty()) {
+            int current = queue.poll();
+            int childCount = tree.getChildCount(current);
+            if (childCount == 0) {
+                continue;
+            }
+            sb.append(';').append(current).append(':');
+            for (int i = 0; i < childCount; i++) {
+                int child = tree.getChild(current, i);
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(child);
+                queue.add(child);
+                progress.step();
+            }
+        }
+        sb.append("), ");
+    }
+
+    /**
+     * Executes transformation instructions on the tree: Add, Remove and the compact RemoveSubtree and AddSubtree
+     * instructions (see {@link #getCompactTransformations(TreeView, TreeView)}), which are executed as bulk
+     * operations ({@link Tree#removeSubtree(int)} and {@link Tree#graftSubtree(int, Tree)}).
+     * @param tree tree the instructions are executed on (modified)
+     * @param transformations sequence of instructions, e.g. Remove(3), AddSubtree(1, 6;6:7,8)
+     * @throws IllegalArgumentException if some instruction is invalid
+     * @throws NumberFormatException if some node index was not integer
+     * @throws NotALeafException if Remove instruction removes a node that is not a leaf
+     * @throws NodeAlreadyExistsException if some added node already exists in the tree
+     * @throws ParentDoesNotExistException if parent of some added node doesn't exist in the tree
+     * @throws NodeDoesNotExistException if RemoveSubtree instruction removes a node that doesn't exist
+     * */
+    public static void applyTransformations(Tree tree, String transformations) {
+        parseTransformations(transformations, (name, node, argument) -> {
+            switch (name) {
+                case "remove" -> tree.removeNode(node);
+                case "removesubtree" -> tree.removeSubtree(node);
+                case "add" -> tree.addNode(node, Integer.parseInt(argument));
+                case "addsubtree" -> tree.graftSubtree(node, Tree.getTreeFromData(argument.replace(';', '\n')));
+            }
+        });
+    }
+
+    /**
+     * Consumer of parsed transformation instructions
+     */
+    interface InstructionConsumer {
+        /**
+         * @param name lower case name of the instruction: add, remove, addsubtree or removesubtree
+         * @param node node of the instruction (parent for add instructions)
+         * @param argument child or serialized subtree for add instructions, null otherwise
+         * */
+        void accept(String name, int node, String argument);
+    }
+
+    /**
+     * Parses transformation instructions and passes them to the consumer one by one, in order
+     * @param transformations sequence of instructions, e.g. Remove(3), AddSubtree(1, 6;6:7,8)
+     * @param consumer consumer of the instructions
+     * @throws IllegalArgumentException if some instruction is invalid
+     * @throws NumberFormatException if some node index was not integer
+     * */
+    static void parseTransformations(String transformations, InstructionConsumer consumer) {
+        if (transformations.isBlank()) {
+            return;
+        }
+        for (String instruction : transformations.trim().split("(?<=\\)), ")) {
+            int open = instruction.indexOf('(');
+            if (open == -1 || !instruction.endsWith(")")) {
+                throw new IllegalArgumentException("Invalid instruction: " + instruction);
+            }
+            String name = instruction.substring(0, open).trim().toLowerCase(Locale.ROOT);
+            String arguments = instruction.substring(open + 1, instruction.length() - 1);
+            int separator = arguments.indexOf(',');
+            switch (name) {
+                case "remove", "removesubtree" -> consumer.accept(name, Integer.parseInt(arguments.trim()), null);
+                case "add", "addsubtree" -> {
+                    if (separator == -1) {
+                        throw new IllegalArgumentException("Invalid instruction: " + instruction);
+                    }
+                    consumer.accept(name, Integer.parseInt(arguments.substring(0, separator).trim()),
+                            arguments.substring(separator + 1).trim());
+                }
+                default -> throw new IllegalArgumentException("Invalid instruction: " + instruction);
+            }
+        }
+    }
+
     /**
      * Transforms a string tree description from the file into a Tree instance if it's described correctly
+     * File is streamed, ".gz" files are decompressed on the fly
      * @param file Path to the tree description file
      * @return Tree if description was correct, null otherwise
      * @throws IllegalArgumentException if incorrect tree structure was provided i.e.:
@@ -162,13 +519,37 @@ public class TreeTransformer {
      * @throws IOException if file operations failed
      * */
     public static Tree getTreeFromFile(String file) throws IOException {
-        String t;
-        try (BufferedReader reader = Files.newBufferedReader(Path.of(file))){
-            t = reader.lines().collect(Collectors.joining());
+        return getTreeFromFile(file, null);
+    }
+
+    /**
+     * Same as {@link #getTreeFromFile(String)} for trees with arbitrary node labels (strings, 64-bit numbers)
+     * @param file Path to the tree description file
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @return Tree if description was correct
+     * @throws IOException if file operations failed
+     * */
+    public static Tree getTreeFromFile(String file, NodeDictionary dictionary) throws IOException {
+        return getTreeFromFile(file, dictionary, null);
+    }
+
+    /**
+     * Same as {@link #getTreeFromFile(String, NodeDictionary)}, but parsing can be stopped with the token
+     * @param file Path to the tree description file
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @param token token to stop parsing with, null if parsing cannot be stopped
+     * @return Tree if description was correct
+     * @throws OperationCancelledException if token was cancelled or its time budget ran out
+     * @throws IOException if file operations failed
+     * */
+    public static Tree getTreeFromFile(String file, NodeDictionary dictionary, CancellationToken token) throws IOException {
+        try (BufferedReader reader = TreeFiles.newReader(file)) {
+            return Tree.getTreeFromReader(reader, dictionary, token);
+        } catch (UncheckedIOException e) {
+            throw new IOException(e.getCause());
         } catch (IOException e) {
             throw new IOException(e);
         }
-        return Tree.getTreeFromString(t);
     }
 
     /**
@@ -180,11 +561,147 @@ public class TreeTransformer {
      * E.g.: Remove(6), Remove(3), ADD(1, 6)
      * */
     public static String getTransformationsFromFiles(String file1, String file2) throws IOException {
-        StringBuilder result = new StringBuilder();
-        Tree tree1 = getTreeFromFile(file1);
-        Tree tree2 = getTreeFromFile(file2);
-        result.append(tree1).append(tree2);
-        return result.append(getTransformations(tree1, tree2)).toString();
+        return getTransformationsFromFiles(file1, file2, false);
+    }
+
+    /**
+     * Function computes transformation instruction sequence from given to desired tree
+     * for the trees given in file1 and file2
+     * Both files are read and parsed concurrently, so the diff starts after the slower of them is parsed.
+     * Snapshot files (".tts", see {@link TreeSnapshot}) are not parsed at all, nodes are read lazily from the mapping.
+     * @param file1 file where given tree is defined
+     * @param file2 file where the desired tree is defined
+     * @param renderTrees true if both trees should be printed before the instructions
+     * @return a sequence of transformation instructions (without a trailing comma), preceded by trees if requested
+     * @throws IOException if some file could not be read
+     * */
+    public static String getTransformationsFromFiles(String file1, String file2, boolean renderTrees) throws IOException {
+        return getTransformationsFromFiles(file1, file2, renderTrees, null);
+    }
+
+    /**
+     * Same as {@link #getTransformationsFromFiles(String, String, boolean)} for trees with arbitrary node labels
+     * Labels of both trees are encoded with the same dictionary, so files are parsed one after another.
+     * @param file1 file where given tree is defined
+     * @param file2 file where the desired tree is defined
+     * @param renderTrees true if both trees should be printed before the instructions
+     * @param dictionary dictionary for labels to be encoded with, null if nodes are given by int indexes
+     * @return a sequence of transformation instructions with node labels (without a trailing comma)
+     * @throws IOException if some file could not be read
+     * */
+    public static String getTransformationsFromFiles(String file1, String file2, boolean renderTrees,
+                                                     NodeDictionary dictionary) throws IOException {
+        if (dictionary != null) {
+            Tree tree1 = getTreeFromFile(file1, dictionary);
+            Tree tree2 = getTreeFromFile(file2, dictionary);
+            StringBuilder result = new StringBuilder();
+            if (renderTrees) {
+                result.append(tree1.toString(dictionary)).append(tree2.toString(dictionary));
+            }
+            return result.append(getTransformations(tree1, tree2, dictionary)).toString();
+        }
+        return getTransformationsFromFiles(file1, file2, renderTrees, false);
+    }
+
+    /**
+     * Same as {@link #getTransformationsFromFiles(String, String, boolean)}, optionally with compact instructions
+     * (see {@link #getCompactTransformations(TreeView, TreeView)})
+     * @param file1 file where given tree is defined
+     * @param file2 file where the desired tree is defined
+     * @param renderTrees true if both trees should be printed before the instructions
+     * @param compact true if removed and created subtrees should be single RemoveSubtree and AddSubtree instructions
+     * @return a sequence of transformation instructions (without a trailing comma), preceded by trees if requested
+     * @throws IOException if some file could not be read
+     * */
+    public static String getTransformationsFromFiles(String file1, String file2, boolean renderTrees,
+                                                     boolean compact) throws IOException {
+        CancellationToken parsing = new CancellationToken();
+        CompletableFuture<TreeView> desired = CompletableFuture.supplyAsync(() -> {
+            try {
+                return openTree(file2, parsing);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        TreeView tree1, tree2;
+        try {
+            tree1 = openTree(file1, null);
+        } catch (IOException | RuntimeException e) {
+            // cancelling the future would not stop the parsing, it is stopped by the token and awaited,
+            // so that a snapshot it opened can be closed
+            parsing.cancel();
+            try {
+                closeTree(desired.join());
+            } catch (CompletionException ignored) {
+                // parsing was stopped or failed as well, the first failure is reported
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        try {
+            tree2 = desired.join();
+        } catch (CompletionException e) {
+            closeTree(tree1);
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            } else if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        try {
+            StringBuilder result = new StringBuilder();
+            if (renderTrees) {
+                result.append(asTree(tree1)).append(asTree(tree2));
+            }
+            return result.append(compact ? getCompactTransformations(tree1, tree2) : getTransformations(tree1, tree2))
+                    .toString();
+        } finally {
+            closeTree(tree1);
+            closeTree(tree2);
+        }
+    }
+
+    /**
+     * Opens tree of the file: snapshots (".tts") are mapped without parsing, other files are parsed into a Tree
+     * @param file Path to the tree file
+     * @param token token to stop parsing with, null if parsing cannot be stopped
+     * @return view of the tree, snapshots have to be closed after use
+     * @throws OperationCancelledException if token was cancelled while parsing
+     * @throws IOException if file operations failed
+     * */
+    private static TreeView openTree(String file, CancellationToken token) throws IOException {
+        if (file.endsWith(TreeSnapshot.EXTENSION)) {
+            return TreeSnapshot.open(Path.of(file));
+        }
+        return getTreeFromFile(file, null, token);
+    }
+
+    /**
+     * @return the tree itself if it is a Tree, otherwise its copy (e.g. of a snapshot to be printed)
+     * */
+    private static Tree asTree(TreeView tree) {
+        return tree instanceof Tree parsed ? parsed : Tree.copyOf(tree);
+    }
+
+    private static void closeTree(TreeView tree) throws IOException {
+        if (tree instanceof TreeSnapshot snapshot) {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Writes transformations into the file (compressed if file ends with ".gz")
+     * @param file file for transformations to be written to
+     * @param transformations transformation instruction sequence
+     * @throws IOException if file operations failed
+     * */
+    public static void writeTransformations(String file, String transformations) throws IOException {
+        try (Writer writer = TreeFiles.newWriter(file)) {
+            writer.write(transformations);
+            writer.write(System.lineSeparator());
+        }
     }
 
     /**
@@ -215,20 +732,21 @@ public class TreeTransformer {
         // by convention, we use lower case for comand names here
         supportedCommandsMap.put("add", "( )*add\\((\\d)+,( )*(\\d)+\\)( )*");
         supportedCommandsMap.put("remove", "remove\\((\\d)+\\)");
-        supportedCommandsMap.put("save", "save (.)*\\.(tt)");
-        supportedCommandsMap.put("load", "load .*\\.(tt)");
+        supportedCommandsMap.put("save", "save (.)*\\.(tt)(\\.gz)?");
+        supportedCommandsMap.put("load", "load .*\\.(tt)(\\.gz)?");
     }
 
     /**
      * Handles interactive add command i.e. add node as child with childIndex to the node with parentIndex
      * @param command add command with parent and child indexes of node to be added
-     * @param tree tree to which node should be added
+     * @param renderer renderer of the tree to which node should be added
+     * @return changed lines of the rendered tree
      * @throws NodeAlreadyExistsException if node with childIndex already exists in the tree
      * @throws ParentDoesNotExistException if node with parentIndex doesn't exist in the tree
      * @throws IllegalStateException if some nodes index couldn't be found, or was invalid
      * @throws NumberFormatException if some nodes index was not integer
      * */
-    private static void handleAdd(String command, Tree tree) {
+    private static String handleAdd(String command, TreeRenderer renderer) {
         Pattern nums = Pattern.compile("(\\d)+");
         Matcher matcher = nums.matcher(command);
         int parent, child;
@@ -245,7 +763,7 @@ public class TreeTransformer {
             throw new NumberFormatException("Could not parse index of a node: " + e.getMessage());
         }
         try {
-            tree.addNode(parent, child);
+            return renderer.addNode(parent, child);
         } catch (NodeAlreadyExistsException e) {
             throw new NodeAlreadyExistsException(e.getMessage());
         } catch (ParentDoesNotExistException e) {
@@ -256,12 +774,13 @@ public class TreeTransformer {
     /**
      * Handles interactive remove command i.e. removes node with the given index from the tree
      * @param command remove command with index of node to be removed
-     * @param tree tree from which node will be removed
+     * @param renderer renderer of the tree from which node will be removed
+     * @return changed lines of the rendered tree
      * @throws NotALeafException if node with index is not a leaf or is not presented in the tree (implies the first one)
      * @throws IllegalStateException if node index couldn't be found, or was invalid
      * @throws NumberFormatException if node index was not integer
      * */
-    private static void handleRemove(String command, Tree tree) {
+    private static String handleRemove(String command, TreeRenderer renderer) {
         Pattern nums = Pattern.compile("(\\d)+");
         Matcher matcher = nums.matcher(command);
         int index;
@@ -274,7 +793,7 @@ public class TreeTransformer {
             throw new NumberFormatException("Could not parse index of a node: " + e.getMessage());
         }
         try {
-            tree.removeNode(index);
+            return renderer.removeNode(index);
         } catch (NotALeafException e) {
             throw new NotALeafException(e.getMessage());
         }
@@ -326,6 +845,8 @@ public class TreeTransformer {
     /**
      * Handles interactive mode of the Tree Transformer. Following commands are supported:
      * ADD(<int: parent_index>, <int: child_index>), REMOVE(<int: leaf index>), SAVE <filename>.tt, LOAD <filename>.tt, EXIT
+     * The tree is printed in full at the start and after LOAD, ADD and REMOVE print only the changed lines
+     * (see {@link TreeRenderer}).
      * @param inputStream stream to get transformation instructions from
      * @param outputStream stream to print successful output information to
      * @param errorStream stream to print error information
@@ -336,6 +857,10 @@ public class TreeTransformer {
         outputStream.println(interactiveGreet);
         outputStream.println(instructionHelpMessage);
         initializeSupportedCommands();  //initialize supported commands
+        TreeRenderer renderer = new TreeRenderer(tree);
+        if (!tree.isEmpty()) {
+            outputStream.println(renderer.render());
+        }
         Scanner scanner = new Scanner(inputStream);
         String command = scanner.nextLine();
         while (!command.equalsIgnoreCase(exitCommand)) {
@@ -345,19 +870,7 @@ public class TreeTransformer {
                 errorStream.println("Invalid command received!");
             } else {
                 try {
-                    switch (commandName) {
-                        case "add" -> handleAdd(command, tree);
-                        case "remove" -> handleRemove(command, tree);
-                        case "save" -> {
-                            handleSave(command, tree);
-                            outputStream.println("Tree successfully saved!");
-                        }
-                        case "load" -> {
-                            tree = handleLoad(command);
-                            outputStream.println("Tree successfully loaded!");
-                        }
-                    }
-                    outputStream.println(tree);
+                    executeCommand(commandName, command, renderer, outputStream);
                 } catch (Exception e) {
                     errorStream.println("Command execution failed! " + e.getMessage());
                 }
@@ -365,22 +878,261 @@ public class TreeTransformer {
             outputStream.println(instructionHelpMessage);
             command = scanner.nextLine();
         }
-        return tree;
+        return renderer.getTree();
+    }
+
+    /**
+     * Executes a single interactive command (ADD, REMOVE, SAVE or LOAD) and prints the changes of the tree,
+     * exactly as the interactive mode does (see {@link #executeCommand(String, TreeRenderer, PrintStream)})
+     * @param command command to be executed, e.g. ADD(1, 2)
+     * @param tree tree on which the command will be performed
+     * @param outputStream stream to print output information to
+     * @return tree after the command (a new tree after LOAD, the same one otherwise)
+     * @throws IllegalArgumentException if command is not supported
+     * @throws IOException if file operations of SAVE or LOAD failed
+     * */
+    public static Tree executeCommand(String command, Tree tree, PrintStream outputStream) throws IOException {
+        return executeCommand(command, new TreeRenderer(tree), outputStream);
+    }
+
+    /**
+     * Executes a single interactive command (ADD, REMOVE, SAVE or LOAD) exactly as the interactive mode does:
+     * ADD and REMOVE print only the changed lines of the rendered tree, LOAD prints the whole loaded tree
+     * @param command command to be executed, e.g. ADD(1, 2)
+     * @param renderer renderer of the tree on which the command will be performed (it renders the new tree after LOAD)
+     * @param outputStream stream to print output information to
+     * @return tree after the command (a new tree after LOAD, the same one otherwise)
+     * @throws IllegalArgumentException if command is not supported
+     * @throws IOException if file operations of SAVE or LOAD failed
+     * */
+    public static Tree executeCommand(String command, TreeRenderer renderer, PrintStream outputStream) throws IOException {
+        if (supportedCommandsMap == null) {
+            initializeSupportedCommands();
+        }
+        command = command.toLowerCase(Locale.ROOT);
+        String commandName = getCommand(command);
+        if (commandName == null) {
+            throw new IllegalArgumentException("Invalid command received!");
+        }
+        executeCommand(commandName, command, renderer, outputStream);
+        return renderer.getTree();
+    }
+
+    private static void executeCommand(String commandName, String command, TreeRenderer renderer, PrintStream outputStream)
+            throws IOException {
+        switch (commandName) {
+            case "add" -> outputStream.print(handleAdd(command, renderer));
+            case "remove" -> outputStream.print(handleRemove(command, renderer));
+            case "save" -> {
+                handleSave(command, renderer.getTree());
+                outputStream.println("Tree successfully saved!");
+            }
+            case "load" -> {
+                Tree tree = handleLoad(command);
+                outputStream.println("Tree successfully loaded!");
+                outputStream.print(renderer.load(tree));
+            }
+        }
+    }
+
+    /**
+     * Handles generate and loadtest subcommands (see help message)
+     * @param args command line arguments, starting with the subcommand
+     * */
+    private static void handleGeneratorCommand(String[] args) {
+        boolean generate = args[0].equals("generate");
+        List<String> positional = new ArrayList<>();
+        int fanOut = 2;
+        long seed = 0;
+        double editRatio = -1;
+        String mutatedOutput = null;
+        TreeGenerator generator;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--fan-out" -> fanOut = Integer.parseInt(args[++i]);
+                    case "--seed" -> seed = Long.parseLong(args[++i]);
+                    case "--mutate" -> {
+                        editRatio = Double.parseDouble(args[++i]);
+                        mutatedOutput = args[++i];
+                    }
+                    default -> positional.add(args[i]);
+                }
+            }
+            if (positional.size() != 3 || (!generate && mutatedOutput != null)) {
+                throw new IllegalArgumentException();
+            }
+            generator = new TreeGenerator(TreeGenerator.Shape.of(positional.get(0)),
+                    Integer.parseInt(positional.get(1)), fanOut, seed);
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            System.out.println(helpMessage);
+            return;
+        }
+        try {
+            if (generate) {
+                if (mutatedOutput == null) {
+                    generator.write(positional.get(2));
+                } else {
+                    Tree tree = generator.generateTree();
+                    TreeGenerator.write(tree, positional.get(2));
+                    TreeGenerator.write(TreeGenerator.mutate(tree, editRatio, seed + 1), mutatedOutput);
+                }
+            } else {
+                Tree tree = generator.generateTree();
+                List<String> commands = LoadTest.generateCommands(tree, Integer.parseInt(positional.get(2)), seed + 1);
+                System.out.println(LoadTest.run(tree, commands));
+            }
+        } catch (Exception e) {
+            System.err.println((generate ? "Generation" : "Load test") + " failed! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles patch subcommand (see help message)
+     * @param args command line arguments, starting with the subcommand
+     * */
+    private static void handlePatchCommand(String[] args) {
+        String output = null;
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 2) {
+            System.out.println(helpMessage);
+            return;
+        }
+        try {
+            StringBuilder transformations = new StringBuilder();
+            try (BufferedReader reader = TreeFiles.newReader(positional.get(1))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    transformations.append(line);
+                }
+            }
+            TreePatcher.patch(positional.get(0), transformations.toString(), output == null ? positional.get(0) : output);
+        } catch (Exception e) {
+            System.err.println("Patch failed! " + e.getMessage());
+        }
+    }
+
+    /**
+     * Handles merge subcommand (see help message)
+     * @param args command line arguments, starting with the subcommand
+     * */
+    private static void handleMergeCommand(String[] args) {
+        String output = null;
+        List<String> positional = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-o") && i + 1 < args.length) {
+                output = args[++i];
+            } else {
+                positional.add(args[i]);
+            }
+        }
+        if (positional.size() != 3) {
+            System.out.println(helpMessage);
+            return;
+        }
+        try {
+            Tree[] trees = new Tree[3];
+            for (int i = 0; i < trees.length; i++) {
+                String file = positional.get(i);
+                if (TreeFiles.stripCompression(file).endsWith(Tree.EXTENSION)) {
+                    trees[i] = Tree.deserializeTree(file);
+                } else {
+                    TreeView tree = openTree(file, null);
+                    try {
+                        trees[i] = asTree(tree);
+                    } finally {
+                        closeTree(tree);
+                    }
+                }
+            }
+            MergeResult result = TreeMerger.merge(trees[0], trees[1], trees[2]);
+            for (MergeConflict conflict : result.getConflicts()) {
+                System.err.println("Conflict: " + conflict);
+            }
+            if (output != null) {
+                TreeGenerator.write(result.getTree(), output);
+            }
+            System.out.println(result.getTransformations());
+        } catch (Exception e) {
+            System.err.println("Merge failed! " + e.getMessage());
+        }
     }
 
     public static void main(String[] args) {
         if (Arrays.stream(args).anyMatch((a) -> a.equals("-h") || a.equals("--help"))) {
             System.out.println(helpMessage);
-        } else if (args.length == 2) {
-            try {
-                System.out.println(getTransformationsFromFiles(args[0], args[1]));
-            } catch (Exception e) {
-                System.err.println("Transformation failed! " + e.getMessage());
-            }
+            return;
         } else if (args.length == 0) {
             handleInteractiveMode(System.in, System.out, System.err, new Tree());
-        } else {
+            return;
+        } else if (args[0].equals("generate") || args[0].equals("loadtest")) {
+            handleGeneratorCommand(args);
+            return;
+        } else if (args[0].equals("patch")) {
+            handlePatchCommand(args);
+            return;
+        } else if (args[0].equals("merge")) {
+            handleMergeCommand(args);
+            return;
+        }
+        List<String> files = new ArrayList<>();
+        String output = null;
+        long memoryLimit = -1; // in-memory diff by default
+        boolean renderTrees = false;
+        boolean compact = false;
+        NodeDictionary dictionary = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o" -> output = args[++i];
+                    case "--memory" -> memoryLimit = Long.parseLong(args[++i]) * 1024 * 1024;
+                    case "--trees" -> renderTrees = true;
+                    case "--compact" -> compact = true;
+                    case "--labels" -> dictionary = new NodeDictionary();
+                    default -> files.add(args[i]);
+                }
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            files.clear();
+        }
+        if (files.size() != 2) {
             System.out.println(helpMessage);
+            return;
+        }
+        try {
+            if (memoryLimit >= 0 && dictionary == null) {
+                if (output == null) {
+                    // System.out is only flushed, closing it would silence the rest of the process
+                    Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+                    ExternalTreeTransformer.getTransformationsFromFiles(files.get(0), files.get(1), writer, memoryLimit);
+                    writer.write(System.lineSeparator());
+                    writer.flush();
+                } else {
+                    try (Writer writer = TreeFiles.newWriter(output)) {
+                        ExternalTreeTransformer.getTransformationsFromFiles(files.get(0), files.get(1), writer,
+                                memoryLimit);
+                        writer.write(System.lineSeparator());
+                    }
+                }
+            } else {
+                String transformations = dictionary == null
+                        ? getTransformationsFromFiles(files.get(0), files.get(1), renderTrees, compact)
+                        : getTransformationsFromFiles(files.get(0), files.get(1), renderTrees, dictionary);
+                if (output != null) {
+                    writeTransformations(output, transformations);
+                } else {
+                    System.out.println(transformations);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Transformation failed! " + e.getMessage());
         }
     }
 }
@@ -0,0 +1,81 @@
+package main.java;
+
+import java.util.ArrayDeque;
+
+/**
+ * Read-only access to a tree through node indexes.
+ * Implemented by every tree storage ({@link Tree}, {@link OffHeapTree}), so that traversals,
+ * transformations and serialization work regardless of where the nodes are stored.
+ */
+public interface TreeView {
+    /**
+     * @return true if tree has no nodes
+     * */
+    boolean isEmpty();
+
+    /**
+     * @return index of the root node
+     * @throws IllegalStateException if tree is empty
+     * */
+    int getRootIndex();
+
+    /**
+     * @return number of nodes in the tree
+     * */
+    int size();
+
+    /**
+     * @param index index of the node
+     * @return true if node with index is present in the tree
+     * */
+    boolean containsNode(int index);
+
+    /**
+     * @param index index of the node
+     * @return number of children of the node
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    int getChildCount(int index);
+
+    /**
+     * Returns child of the node by its position. Children are ordered by ascending indexes,
+     * so children of two nodes can be matched by a linear merge.
+     * Iterating positions 0..getChildCount(index)-1 in order is expected to be cheap for every implementation.
+     * @param index index of the node
+     * @param position position of the child, 0 <= position < getChildCount(index)
+     * @return index of the child
+     * @throws IllegalArgumentException if node is not present in the tree
+     * @throws IndexOutOfBoundsException if position is out of range
+     * */
+    int getChild(int index, int position);
+
+    /**
+     * Returns number of nodes in the subtree of the node (including the node itself)
+     * Default implementation counts nodes by a traversal of the subtree,
+     * implementations that maintain subtree sizes (e.g. {@link Tree}) answer in O(1).
+     * @param index index of the node
+     * @return size of the subtree of the node
+     * @throws IllegalArgumentException if node is not present in the tree
+     * */
+    default int getSubtreeSize(int index) {
+        int size = 0;
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        stack.push(index);
+        while (!stack.isEmpty()) {
+            int current = stack.pop();
+            size++;
+            int childCount = getChildCount(current);
+            for (int i = 0; i < childCount; i++) {
+                stack.push(getChild(current, i));
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Returns a counter that changes with every modification of the tree,
+     * so that derived structures (e.g. {@link TreeIndex}) know when they are outdated
+     * @return modification counter (constant for immutable trees)
+     * */
+    long getModificationCount();
+}
@@ -0,0 +1,7 @@
+package main.java.exceptions;
+
+public class NodeDoesNotExistException extends RuntimeException{
+    public NodeDoesNotExistException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,40 @@
+package main.java.exceptions;
+
+public class OperationCancelledException extends RuntimeException{
+    private final String partialResult;
+    private final long done;
+    private final long total;
+
+    public OperationCancelledException(String s, long done, long total) {
+        this(s, null, done, total);
+    }
+
+    public OperationCancelledException(String s, String partialResult, long done, long total) {
+        super(s);
+        this.partialResult = partialResult;
+        this.done = done;
+        this.total = total;
+    }
+
+    /**
+     * @return result computed before cancellation (e.g. a valid prefix of transformation instructions),
+     * null if operation has no partial result
+     * */
+    public String getPartialResult() {
+        return partialResult;
+    }
+
+    /**
+     * @return number of nodes (or edges) processed before cancellation
+     * */
+    public long getDone() {
+        return done;
+    }
+
+    /**
+     * @return total number of nodes (or edges) to be processed, -1 if unknown
+     * */
+    public long getTotal() {
+        return total;
+    }
+}
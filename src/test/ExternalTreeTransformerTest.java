@@ -0,0 +1,114 @@
+package test;
+
+import main.java.ExternalTreeTransformer;
+import main.java.Tree;
+import main.java.TreeGenerator;
+import main.java.TreeGenerator.Shape;
+import main.java.TreeTransformer;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static main.java.TreeTransformer.getTreeFromFile;
+import static main.java.TreeTransformer.handleInteractiveMode;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExternalTreeTransformerTest {
+    String one = "resources/one.txt";
+    String two = "resources/two.txt";
+    String root_1 = "resources/root_1.txt";
+    String root_2 = "resources/root_2.txt";
+    String tree_1 = "resources/test_tree_1.txt";
+    String tree_2 = "resources/test_tree_2.txt";
+    String empty_file = "resources/empty.txt";
+    long memoryLimit = 32; // 4 records, forces multiple spill runs
+
+    /**
+     * Replays out-of-core transformations from file1 to file2 and checks the result is the tree from file2
+     * */
+    private void assertTransformations(String file1, String file2) throws IOException {
+        StringBuilder transformations = new StringBuilder();
+        ExternalTreeTransformer.getTransformationsFromFiles(file1, file2, transformations, memoryLimit);
+        String commands = (transformations + "\nexit").replaceAll("\\), ", "\\)\n");
+        InputStream in = new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8));
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        PrintStream out = new PrintStream(new ByteArrayOutputStream());
+        PrintStream err = new PrintStream(errors);
+        Tree rebuiltTree = handleInteractiveMode(in, out, err, getTreeFromFile(file1));
+        assertEquals(getTreeFromFile(file2), rebuiltTree);
+        assertEquals("", errors.toString());
+    }
+
+    @Test
+    void getTransformationsTest() throws IOException {
+        assertTransformations(one, two);
+        assertTransformations(two, one);
+        assertTransformations(tree_1, tree_2);
+        assertTransformations(tree_2, tree_1);
+    }
+
+    @Test
+    void getTransformationsForDifferentRootsTest() throws IOException {
+        assertTransformations(root_1, root_2);
+    }
+
+    @Test
+    void getTransformationsEmptyTest() throws IOException {
+        assertTransformations(empty_file, one);
+        assertTransformations(one, empty_file);
+        StringBuilder same = new StringBuilder();
+        ExternalTreeTransformer.getTransformationsFromFiles(tree_1, tree_1, same, memoryLimit);
+        assertEquals("", same.toString());
+    }
+
+    private static String createFile(String edges) throws IOException {
+        File file = File.createTempFile("edges", ".txt");
+        file.deleteOnExit();
+        try (Writer writer = new FileWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(edges);
+        }
+        return file.getPath();
+    }
+
+    @Test
+    void invalidTreeTest() throws IOException {
+        String tree = createFile("[1,2]");
+        // node with several parents (cycle reachable from the root), cycle not connected to the root
+        for (String edges : new String[]{"[1,2][2,3][3,2]", "[1,2][3,4][4,3]", "[1,2][1,3][2,4][3,4]"}) {
+            String invalid = createFile(edges);
+            assertThrows(IllegalArgumentException.class,
+                    () -> ExternalTreeTransformer.getTransformationsFromFiles(invalid, tree, new StringBuilder(), memoryLimit));
+            assertThrows(IllegalArgumentException.class,
+                    () -> ExternalTreeTransformer.getTransformationsFromFiles(tree, invalid, new StringBuilder(), memoryLimit));
+            // levels of the valid tree are already written when the invalid one fails, no spill file is left
+            Path directory = Files.createTempDirectory("spill");
+            assertThrows(IllegalArgumentException.class, () -> new ExternalTreeTransformer(memoryLimit, directory)
+                    .getTransformations(tree, invalid, new StringBuilder()));
+            try (var files = Files.list(directory)) {
+                assertEquals(0, files.count());
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void deepTreeTest() throws IOException {
+        // levels are not rescanned, so a long chain (one level per node) is cheap,
+        // edges are sorted in memory here (the tiny limit above would spill thousands of runs)
+        Tree chain = new TreeGenerator(Shape.CHAIN, 20000, 1, 1).generateTree();
+        String given = File.createTempFile("chain", ".txt").getPath();
+        String desired = File.createTempFile("mutated", ".txt").getPath();
+        new File(given).deleteOnExit();
+        new File(desired).deleteOnExit();
+        TreeGenerator.write(chain, given);
+        TreeGenerator.write(TreeGenerator.mutate(chain, 0.01, 2), desired);
+        StringBuilder transformations = new StringBuilder();
+        ExternalTreeTransformer.getTransformationsFromFiles(given, desired, transformations, 1 << 20);
+        Tree rebuiltTree = getTreeFromFile(given);
+        TreeTransformer.applyTransformations(rebuiltTree, transformations.toString());
+        assertEquals(getTreeFromFile(desired), rebuiltTree);
+    }
+}
@@ -0,0 +1,129 @@
+package test;
+
+import main.java.OffHeapTree;
+import main.java.Tree;
+import main.java.TreeTransformer;
+import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NotALeafException;
+import main.java.exceptions.ParentDoesNotExistException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import static main.java.TreeTransformer.getTreeFromFile;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapTreeTest {
+    @Test
+    void addRemoveNode() throws IOException {
+        try (OffHeapTree tree = new OffHeapTree()) {
+            assertTrue(tree.isEmpty());
+            tree.addNode(1, 2);
+            tree.addNode(1, 3);
+            tree.addNode(3, 4);
+            assertEquals(1, tree.getRootIndex());
+            assertEquals(4, tree.size());
+            assertEquals(2, tree.getChildCount(1));
+            assertTrue(tree.containsNode(4));
+            assertThrows(NodeAlreadyExistsException.class, () -> tree.addNode(2, 4));
+            assertThrows(ParentDoesNotExistException.class, () -> tree.addNode(5, 6));
+            assertThrows(NotALeafException.class, () -> tree.removeNode(3));
+            assertThrows(NotALeafException.class, () -> tree.removeNode(7));
+            tree.removeNode(4);
+            tree.removeNode(3);
+            tree.removeNode(2);
+            assertFalse(tree.containsNode(3));
+            assertEquals(0, tree.getChildCount(1));
+            tree.removeNode(1);
+            assertTrue(tree.isEmpty());
+            assertEquals(0, tree.size());
+        }
+    }
+
+    @Test
+    void growTest() throws IOException {
+        Tree expected = new Tree();
+        try (OffHeapTree tree = new OffHeapTree()) {
+            for (int i = 1; i < 5000; i++) {
+                expected.addNode((i - 1) / 3, i);
+                tree.addNode((i - 1) / 3, i);
+            }
+            // removed slots are reused
+            for (int i = 4999; i > 3000; i--) {
+                expected.removeNode(i);
+                tree.removeNode(i);
+            }
+            for (int i = 4999; i > 3000; i--) {
+                expected.addNode(i - 3000, -i);
+                tree.addNode(i - 3000, -i);
+            }
+            assertEquals(expected.size(), tree.size());
+            assertEquals("", TreeTransformer.getTransformations(expected, tree));
+            assertEquals("", TreeTransformer.getTransformations(tree, expected));
+        }
+    }
+
+    @Test
+    void getTransformationsTest() throws IOException {
+        Tree given = getTreeFromFile("resources/test_tree_1.txt");
+        Tree desired = getTreeFromFile("resources/test_tree_2.txt");
+        try (OffHeapTree offHeapGiven = OffHeapTree.copyOf(given); OffHeapTree offHeapDesired = OffHeapTree.copyOf(desired)) {
+            String transformations = TreeTransformer.getTransformations(offHeapGiven, offHeapDesired);
+            for (String instruction : transformations.split("(?<=\\)), ")) {
+                String[] indexes = instruction.replaceAll("[^0-9,]", "").split(",");
+                if (instruction.startsWith("Remove")) {
+                    offHeapGiven.removeNode(Integer.parseInt(indexes[0]));
+                } else {
+                    offHeapGiven.addNode(Integer.parseInt(indexes[0]), Integer.parseInt(indexes[1]));
+                }
+            }
+            assertEquals("", TreeTransformer.getTransformations(offHeapGiven, desired));
+            assertEquals(TreeTransformer.getTransformations(given, desired).length(), transformations.length());
+        }
+    }
+
+    @Test
+    void mappedFileTest() throws IOException {
+        File file = File.createTempFile("tree", ".bin");
+        file.deleteOnExit();
+        Tree expected = getTreeFromFile("resources/test_tree_1.txt");
+        try (OffHeapTree tree = OffHeapTree.create(file.toPath())) {
+            for (int i = 0; i < 2000; i++) {
+                tree.addNode(i, i + 1);
+            }
+        }
+        try (OffHeapTree tree = OffHeapTree.open(file.toPath())) {
+            assertEquals(2001, tree.size());
+            for (int i = 2000; i > 0; i--) {
+                tree.removeNode(i);
+            }
+            tree.removeNode(0);
+            for (String instruction : TreeTransformer.getTransformations(tree, expected).split("(?<=\\)), ")) {
+                String[] indexes = instruction.replaceAll("[^0-9,]", "").split(",");
+                tree.addNode(Integer.parseInt(indexes[0]), Integer.parseInt(indexes[1]));
+            }
+        }
+        try (OffHeapTree tree = OffHeapTree.open(file.toPath())) {
+            File serialized = File.createTempFile("tree", Tree.EXTENSION);
+            serialized.deleteOnExit();
+            Tree.serializeTree(tree, serialized.getPath());
+            assertEquals(expected, Tree.deserializeTree(serialized.getPath()));
+        }
+        for (OffHeapTree closed : List.of(OffHeapTree.open(file.toPath()), OffHeapTree.copyOf(expected))) {
+            closed.close();
+            closed.close();
+            assertThrows(IllegalStateException.class, closed::size);
+            assertThrows(IllegalStateException.class, closed::isEmpty);
+            assertThrows(IllegalStateException.class, closed::getRootIndex);
+            assertThrows(IllegalStateException.class, closed::getModificationCount);
+            assertThrows(IllegalStateException.class, () -> closed.containsNode(0));
+            assertThrows(IllegalStateException.class, () -> closed.getChildCount(0));
+            assertThrows(IllegalStateException.class, () -> closed.getChild(0, 0));
+            assertThrows(IllegalStateException.class, () -> closed.addNode(0, -1));
+            assertThrows(IllegalStateException.class, () -> closed.removeNode(0));
+        }
+        assertThrows(IllegalArgumentException.class, () -> OffHeapTree.open(new File("resources/sample.tt").toPath()));
+    }
+}
@@ -0,0 +1,126 @@
+package test;
+
+import main.java.FileBenchmark;
+import main.java.LoadTest;
+import main.java.OffHeapTree;
+import main.java.Tree;
+import main.java.TreeGenerator;
+import main.java.TreeGenerator.Shape;
+import main.java.TreeIndex;
+import main.java.TreeTransformer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeGeneratorTest {
+    @Test
+    void shapesTest() {
+        Tree kary = new TreeGenerator(Shape.of("k-ary"), 13, 3, 0).generateTree();
+        assertEquals(Tree.getTreeFromString("[0,1][0,2][0,3][1,4][1,5][1,6][2,7][2,8][2,9][3,10][3,11][3,12]"), kary);
+        Tree chain = new TreeGenerator(Shape.CHAIN, 100000, 1, 0).generateTree();
+        assertEquals(99999, new TreeIndex(chain).getDepth(99999));
+        assertEquals(100000, chain.getSubtreeSize(0));
+        for (Shape shape : Shape.values()) {
+            Tree tree = new TreeGenerator(shape, 5000, 4, 7).generateTree();
+            assertEquals(5000, tree.size());
+            assertEquals(0, tree.getRootIndex());
+            // same seed, same tree
+            assertEquals(tree, new TreeGenerator(shape, 5000, 4, 7).generateTree());
+        }
+        // preferential attachment produces hubs
+        Tree powerLaw = new TreeGenerator(Shape.of("power-law"), 5000, 1, 7).generateTree();
+        Tree random = new TreeGenerator(Shape.RANDOM, 5000, 1, 7).generateTree();
+        assertTrue(maxChildCount(powerLaw) > 2 * maxChildCount(random));
+        assertThrows(IllegalArgumentException.class, () -> new TreeGenerator(Shape.KARY, 1, 2, 0));
+        assertThrows(IllegalArgumentException.class, () -> Shape.of("star"));
+    }
+
+    private static int maxChildCount(Tree tree) {
+        int result = 0;
+        for (int i = 0; i < tree.size(); i++) {
+            result = Math.max(result, tree.getChildCount(i));
+        }
+        return result;
+    }
+
+    @Test
+    void writeTest() throws IOException {
+        TreeGenerator generator = new TreeGenerator(Shape.RANDOM, 3000, 2, 1);
+        Tree expected = generator.generateTree();
+        for (String extension : new String[]{".txt", ".txt.gz", Tree.EXTENSION, Tree.EXTENSION + ".gz"}) {
+            File file = File.createTempFile("generated", extension);
+            file.deleteOnExit();
+            generator.write(file.getPath());
+            Tree actual = extension.startsWith(Tree.EXTENSION)
+                    ? Tree.deserializeTree(file.getPath())
+                    : TreeTransformer.getTreeFromFile(file.getPath());
+            assertEquals(expected, actual);
+        }
+        File file = File.createTempFile("generated", TreeGenerator.BINARY_EXTENSION);
+        file.deleteOnExit();
+        generator.write(file.getPath());
+        try (OffHeapTree tree = OffHeapTree.open(file.toPath())) {
+            assertEquals(expected.size(), tree.size());
+            assertEquals("", TreeTransformer.getTransformations(expected, tree));
+        }
+    }
+
+    @Test
+    void mutateTest() {
+        Tree tree = new TreeGenerator(Shape.RANDOM, 20000, 2, 3).generateTree();
+        Tree mutated = TreeGenerator.mutate(tree, 0.01, 4);
+        assertEquals(20000, tree.size());
+        int edits = TreeTransformer.estimateTransformations(tree, mutated).getTotalCount();
+        assertTrue(edits > 0 && edits <= 200, "edits: " + edits);
+        assertEquals(mutated, TreeGenerator.mutate(tree, 0.01, 4));
+        assertEquals(tree, TreeGenerator.mutate(tree, 0, 4));
+        assertEquals(tree.getRootIndex(), mutated.getRootIndex());
+    }
+
+    @Test
+    void loadTest() throws IOException {
+        Tree tree = new TreeGenerator(Shape.KARY, 200, 3, 0).generateTree();
+        List<String> commands = LoadTest.generateCommands(tree, 500, 5);
+        assertEquals(500, commands.size());
+        assertEquals(200, tree.size());
+        LoadTest.Report report = LoadTest.run(tree, commands);
+        assertEquals(500, report.getCommandCount());
+        assertEquals(0, report.getFailureCount());
+        assertTrue(report.getThroughput() > 0);
+        assertTrue(report.getLatencyPercentile(50) <= report.getLatencyPercentile(99));
+        assertTrue(report.toString().contains("p99"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Tree small = Tree.getTreeFromString("[1,2]");
+        assertSame(small, TreeTransformer.executeCommand("ADD(1, 3)", small, new PrintStream(out, true, StandardCharsets.UTF_8)));
+        assertEquals("~2    ├──2\n+3    └──3\n", out.toString(StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class,
+                () -> TreeTransformer.executeCommand("MOVE(1, 3)", small, new PrintStream(out)));
+    }
+
+    @Test
+    void fileBenchmarkTest() throws IOException {
+        Tree tree = new TreeGenerator(Shape.RANDOM, 2000, 2, 0).generateTree();
+        Path directory = Files.createTempDirectory("benchmark");
+        List<FileBenchmark.Result> results = FileBenchmark.run(tree, directory, 1);
+        assertEquals(List.of(".txt", ".txt.gz", ".tt", ".tt.gz"), results.stream().map(FileBenchmark.Result::getFormat).toList());
+        for (FileBenchmark.Result result : results) {
+            assertTrue(result.getReadThroughput() > 0 && result.getWriteThroughput() > 0);
+            assertTrue(result.toString().contains("MB/s"));
+        }
+        assertTrue(results.get(1).getFileBytes() < results.get(0).getFileBytes());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+        Files.delete(directory);
+    }
+}
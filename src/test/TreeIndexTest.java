@@ -0,0 +1,72 @@
+package test;
+
+import main.java.OffHeapTree;
+import main.java.Tree;
+import main.java.TreeIndex;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeIndexTest {
+    @Test
+    void queriesTest() {
+        Tree tree = Tree.getTreeFromString("[1,2][1,3][3,4][1,5][5,6][5,7][7,8][2,9][2,10][10,15]");
+        TreeIndex index = new TreeIndex(tree);
+        assertTrue(index.isInSubtree(15, 2));
+        assertTrue(index.isInSubtree(15, 1));
+        assertTrue(index.isInSubtree(5, 5));
+        assertFalse(index.isInSubtree(2, 15));
+        assertFalse(index.isInSubtree(8, 3));
+        assertEquals(0, index.getDepth(1));
+        assertEquals(3, index.getDepth(8));
+        assertEquals(4, index.getSubtreeSize(5));
+        assertEquals(5, index.getLowestCommonAncestor(6, 8));
+        assertEquals(1, index.getLowestCommonAncestor(15, 4));
+        assertEquals(2, index.getLowestCommonAncestor(2, 15));
+        assertEquals(7, index.getLowestCommonAncestor(7, 7));
+        assertThrows(IllegalArgumentException.class, () -> index.getDepth(42));
+
+        // index is rebuilt after modifications
+        tree.addNode(8, 42);
+        assertEquals(4, index.getDepth(42));
+        assertEquals(7, index.getLowestCommonAncestor(42, 7));
+        tree.removeNode(42);
+        assertThrows(IllegalArgumentException.class, () -> index.isInSubtree(42, 1));
+    }
+
+    @Test
+    void randomTreeTest() throws IOException {
+        Random random = new Random(42);
+        Tree tree = new Tree();
+        HashMap<Integer, Integer> parents = new HashMap<>();
+        for (int i = 1; i < 2000; i++) {
+            int parent = random.nextInt(i);
+            tree.addNode(parent, i);
+            parents.put(i, parent);
+        }
+        try (OffHeapTree offHeapTree = OffHeapTree.copyOf(tree)) {
+            TreeIndex index = new TreeIndex(tree);
+            TreeIndex offHeapIndex = new TreeIndex(offHeapTree);
+            for (int i = 0; i < 2000; i++) {
+                int a = random.nextInt(2000), b = random.nextInt(2000);
+                // naive lowest common ancestor through parent pointers
+                HashMap<Integer, Boolean> ancestors = new HashMap<>();
+                for (Integer x = a; x != null; x = parents.get(x)) {
+                    ancestors.put(x, true);
+                }
+                Integer lca = b;
+                while (!ancestors.containsKey(lca)) {
+                    lca = parents.get(lca);
+                }
+                assertEquals((int) lca, index.getLowestCommonAncestor(a, b));
+                assertEquals((int) lca, offHeapIndex.getLowestCommonAncestor(a, b));
+                assertEquals(lca == b, index.isInSubtree(a, b));
+                assertEquals(lca == b, offHeapIndex.isInSubtree(a, b));
+            }
+        }
+    }
+}
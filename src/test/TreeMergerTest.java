@@ -0,0 +1,122 @@
+package test;
+
+import main.java.MergeConflict;
+import main.java.MergeResult;
+import main.java.Tree;
+import main.java.TreeGenerator;
+import main.java.TreeGenerator.Shape;
+import main.java.TreeMerger;
+import main.java.TreeTransformer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeMergerTest {
+    private static MergeResult merge(String base, String ours, String theirs) {
+        return TreeMerger.merge(Tree.getTreeFromString(base), Tree.getTreeFromString(ours), Tree.getTreeFromString(theirs));
+    }
+
+    @Test
+    void cleanMergeTest() {
+        String base = "[1,2][1,3][2,4][3,5][5,6]";
+        // ours adds under 2 and removes 6, theirs moves 5 (with its subtree) under 4 and adds under 1
+        MergeResult result = merge(base, "[1,2][1,3][2,4][2,7][3,5]", "[1,2][1,3][2,4][4,5][5,6][1,8]");
+        assertFalse(result.hasConflicts());
+        Tree expected = Tree.getTreeFromString("[1,2][1,3][2,4][2,7][4,5][1,8]");
+        assertEquals(expected, result.getTree());
+        Tree patched = Tree.getTreeFromString(base);
+        TreeTransformer.applyTransformations(patched, result.getTransformations());
+        assertEquals(expected, patched);
+
+        // same changes on both sides are taken once, one-sided merges are the edited tree
+        assertEquals(Tree.getTreeFromString("[1,2][2,4][1,7]"),
+                merge(base, "[1,2][2,4][1,7]", "[1,2][2,4][1,7]").getTree());
+        assertEquals(Tree.getTreeFromString("[0,1][1,2]"), merge(base, base, "[0,1][1,2]").getTree());
+        assertEquals("", merge(base, base, base).getTransformations());
+        assertEquals(Tree.getTreeFromString("[1,2]"), TreeMerger.merge(new Tree(), Tree.getTreeFromString("[1,2]"),
+                new Tree()).getTree());
+    }
+
+    @Test
+    void conflictTest() {
+        String base = "[1,2][1,3][2,4][3,5][5,6]";
+        // both sides move 4 to different parents, the node stays in place
+        MergeResult divergent = merge(base, "[1,2][1,3][3,4][3,5][5,6]", "[1,2][1,3][3,5][5,6][5,4]");
+        assertEquals(List.of(new MergeConflict(MergeConflict.Type.DIVERGENT, 4, 2, 3, 5)), divergent.getConflicts());
+        assertEquals(Tree.getTreeFromString(base), divergent.getTree());
+
+        // theirs deletes subtree 3 which ours edited
+        MergeResult orphan = merge(base, "[1,2][1,3][2,4][3,5][5,6][6,7]", "[1,2][2,4]");
+        assertEquals(List.of(new MergeConflict(MergeConflict.Type.ORPHAN, 7, null, 6, null)), orphan.getConflicts());
+        assertEquals(Tree.getTreeFromString("[1,2][2,4]"), orphan.getTree());
+        assertEquals("DIVERGENT(4): base under 2, ours under 3, theirs under 5", divergent.getConflicts().get(0).toString());
+
+        // ours moves 2 under 3, theirs moves 3 under 2
+        MergeResult cycle = merge("[1,2][1,3]", "[1,3][3,2]", "[1,2][2,3]");
+        assertEquals(List.of(new MergeConflict(MergeConflict.Type.CYCLE, 2, 1, 3, 1),
+                new MergeConflict(MergeConflict.Type.CYCLE, 3, 1, 1, 2)),
+                cycle.getConflicts().stream().sorted((a, b) -> a.getNode() - b.getNode()).toList());
+        assertEquals(Tree.getTreeFromString("[1,2][1,3]"), cycle.getTree());
+
+        // both sides create new roots
+        MergeResult roots = TreeMerger.merge(new Tree(), Tree.getTreeFromString("[1,2]"), Tree.getTreeFromString("[3,4]"));
+        assertEquals(2, roots.getConflicts().stream().filter(c -> c.getType() == MergeConflict.Type.ROOT).count());
+        assertEquals(Integer.valueOf(1), roots.getConflicts().stream()
+                .filter(c -> c.getNode() == 1).findFirst().orElseThrow().getOurParent());
+        assertTrue(roots.getTree().isEmpty());
+        // conflicting changes are left out, the others are merged
+        MergeResult partial = merge(base, "[1,2][1,3][2,4][3,5][5,6][6,7][1,8]", "[1,2][2,4][2,9]");
+        assertEquals(1, partial.getConflicts().size());
+        assertEquals(Tree.getTreeFromString("[1,2][2,4][2,9][1,8]"), partial.getTree());
+    }
+
+    @Test
+    void randomMergeTest() {
+        Tree base = new TreeGenerator(Shape.RANDOM, 5000, 1, 10).generateTree();
+        Tree ours = TreeGenerator.mutate(base, 0.01, 11);
+        Tree theirs = TreeGenerator.mutate(base, 0.01, 12);
+        MergeResult result = TreeMerger.merge(base, ours, theirs);
+        Tree merged = result.getTree();
+        // every node is in the state of the side that changed it, unless it conflicts
+        for (int node = 0; node < 6000; node++) {
+            Integer baseParent = getParent(base, node), ourParent = getParent(ours, node);
+            Integer theirParent = getParent(theirs, node), mergedParent = getParent(merged, node);
+            final int index = node;
+            boolean conflicting = result.getConflicts().stream().anyMatch(c -> c.getNode() == index);
+            if (Objects.equals(ourParent, theirParent)) {
+                assertEquals(ourParent, mergedParent);
+            } else if (Objects.equals(baseParent, ourParent) && !conflicting) {
+                assertEquals(theirParent, mergedParent);
+            } else if (Objects.equals(baseParent, theirParent) && !conflicting) {
+                assertEquals(ourParent, mergedParent);
+            }
+        }
+        Tree patched = Tree.copyOf(base);
+        TreeTransformer.applyTransformations(patched, result.getTransformations());
+        assertEquals(merged, patched);
+        // same instructions as a full comparison of the trees
+        assertEquals(instructions(TreeTransformer.getTransformations(base, merged)),
+                instructions(result.getTransformations()));
+        assertEquals(5000, base.size());
+    }
+
+    private static List<String> instructions(String transformations) {
+        List<String> instructions = new ArrayList<>(Arrays.asList(transformations.split("(?<=\\)), ")));
+        Collections.sort(instructions);
+        return instructions;
+    }
+
+    private static Integer getParent(Tree tree, int node) {
+        Tree.Node n = tree.getNode(node);
+        if (n == null) {
+            return null;
+        }
+        return n.getParent() == null ? node : n.getParent().getIndex();
+    }
+}
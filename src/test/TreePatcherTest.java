@@ -0,0 +1,101 @@
+package test;
+
+import main.java.Tree;
+import main.java.TreeGenerator;
+import main.java.TreeGenerator.Shape;
+import main.java.TreePatcher;
+import main.java.TreeTransformer;
+import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NodeDoesNotExistException;
+import main.java.exceptions.NotALeafException;
+import main.java.exceptions.ParentDoesNotExistException;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreePatcherTest {
+    private static String createFile(Tree tree, String extension) throws IOException {
+        File file = File.createTempFile("patched", extension);
+        file.deleteOnExit();
+        tree.serializeTree(file.getPath());
+        return file.getPath();
+    }
+
+    private static void assertPatch(Tree given, Tree desired) throws IOException {
+        for (String extension : new String[]{Tree.EXTENSION, Tree.EXTENSION + ".gz"}) {
+            String plain = createFile(given, extension);
+            TreePatcher.patch(plain, TreeTransformer.getTransformations(given, desired));
+            assertEquals(desired, Tree.deserializeTree(plain));
+
+            String compact = createFile(given, extension);
+            TreePatcher.patch(compact, TreeTransformer.getCompactTransformations(given, desired));
+            assertEquals(desired, Tree.deserializeTree(compact));
+        }
+    }
+
+    @Test
+    void patchTest() throws IOException {
+        Tree given = Tree.getTreeFromString("[1,2][1,3][2,4][2,5][3,6][6,7]");
+        assertPatch(given, Tree.getTreeFromString("[1,3][1,8][8,9][8,10][10,11][3,12][12,13]"));
+        // new children of a leaf and of a parent with children
+        assertPatch(given, Tree.getTreeFromString("[1,2][1,3][2,4][2,5][3,6][6,7][4,8][6,0][6,9]"));
+        // different roots and empty trees
+        assertPatch(given, Tree.getTreeFromString("[0,1][0,2][1,3]"));
+        assertPatch(given, new Tree());
+        assertPatch(new Tree(), given);
+        assertPatch(given, given);
+
+        Tree big = new TreeGenerator(Shape.RANDOM, 20000, 1, 10).generateTree();
+        assertPatch(big, TreeGenerator.mutate(big, 0.05, 11));
+    }
+
+    @Test
+    void patchIntoTargetTest() throws IOException {
+        Tree given = Tree.getTreeFromString("[1,2][1,3]");
+        String source = createFile(given, Tree.EXTENSION);
+        String target = createFile(new Tree(), Tree.EXTENSION + ".gz");
+        TreePatcher.patch(source, "Remove(3), Add(2, 4)", target);
+        assertEquals(Tree.getTreeFromString("[1,2][2,4]"), Tree.deserializeTree(target));
+        assertEquals(given, Tree.deserializeTree(source));
+    }
+
+    @Test
+    void invalidPatchTest() throws IOException {
+        Tree given = Tree.getTreeFromString("[1,2][1,3][2,4]");
+        String path = createFile(given, Tree.EXTENSION);
+        String content = Files.readString(Path.of(path));
+        assertThrows(IllegalArgumentException.class, () -> TreePatcher.patch(path, "Add(3, 5), Remove(4)"));
+        assertThrows(NotALeafException.class, () -> TreePatcher.patch(path, "Remove(2)"));
+        assertThrows(NotALeafException.class, () -> TreePatcher.patch(path, "Remove(1)"));
+        assertThrows(NotALeafException.class, () -> TreePatcher.patch(path, "Remove(3), Remove(4), Remove(1)"));
+        assertThrows(NodeDoesNotExistException.class, () -> TreePatcher.patch(path, "RemoveSubtree(9)"));
+        assertThrows(NodeAlreadyExistsException.class, () -> TreePatcher.patch(path, "Add(3, 4)"));
+        assertThrows(ParentDoesNotExistException.class, () -> TreePatcher.patch(path, "Add(9, 10)"));
+        assertThrows(ParentDoesNotExistException.class, () -> TreePatcher.patch(path, "RemoveSubtree(2), Add(4, 5)"));
+        assertThrows(IllegalArgumentException.class, () -> TreePatcher.patch(path, "Remove(4)", "tree.txt"));
+        // file is untouched and no temporary files are left
+        assertEquals(content, Files.readString(Path.of(path)));
+        File directory = new File(path).getParentFile();
+        String name = new File(path).getName();
+        assertEquals(0, directory.list((dir, file) -> file.startsWith(name + ".")).length);
+    }
+
+    @Test
+    void patchPermissionsTest() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Path file = Path.of(createFile(Tree.getTreeFromString("[1,2]"), Tree.EXTENSION));
+        Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-rw-r--"));
+        TreePatcher.patch(file.toString(), "Add(2, 3)");
+        assertEquals(Tree.getTreeFromString("[1,2][2,3]"), Tree.deserializeTree(file.toString()));
+        assertEquals(PosixFilePermissions.fromString("rw-rw-r--"), Files.getPosixFilePermissions(file));
+    }
+}
@@ -0,0 +1,147 @@
+package test;
+
+import main.java.Tree;
+import main.java.TreeEvent;
+import main.java.TreePublisher;
+import main.java.TreePublisher.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreePublisherTest {
+    /**
+     * Subscriber that records all the signals
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<TreeEvent> {
+        private final long initialRequest;
+        private final List<TreeEvent> events = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private Throwable error;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(TreeEvent item) {
+            events.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    @Test
+    void mirrorTest() {
+        Tree tree = Tree.getTreeFromString("[1,2][1,3][2,4]");
+        Tree mirror = Tree.copyOf(tree);
+        TreePublisher publisher = new TreePublisher(Runnable::run, 16, OverflowPolicy.DROP_AND_RESYNC);
+        tree.setPublisher(publisher);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        publisher.subscribe(subscriber);
+        assertEquals(1, publisher.getSubscriberCount());
+
+        tree.addNode(4, 5);
+        tree.removeNode(3);
+        Tree subtree = Tree.getTreeFromString("[6,7][6,8][7,9]");
+        tree.graftSubtree(1, subtree);
+        tree.removeSubtree(2);
+        assertEquals(List.of(
+                new TreeEvent(TreeEvent.Type.ADD, 4, 5, 5),
+                new TreeEvent(TreeEvent.Type.REMOVE, 1, 3, 6),
+                new TreeEvent(TreeEvent.Type.ADD, 1, 6, 7),
+                new TreeEvent(TreeEvent.Type.ADD, 6, 7, 7),
+                new TreeEvent(TreeEvent.Type.ADD, 6, 8, 7),
+                new TreeEvent(TreeEvent.Type.ADD, 7, 9, 7),
+                new TreeEvent(TreeEvent.Type.REMOVE_SUBTREE, 1, 2, 8)), subscriber.events);
+        assertEquals("Add(4, 5)", subscriber.events.get(0).toString());
+        for (TreeEvent event : subscriber.events) {
+            event.apply(mirror);
+        }
+        assertEquals(tree, mirror);
+
+        subscriber.subscription.cancel();
+        assertEquals(0, publisher.getSubscriberCount());
+        tree.addNode(1, 10);
+        assertEquals(7, subscriber.events.size());
+        tree.setPublisher(null);
+        assertDoesNotThrow(() -> tree.addNode(1, 11));
+    }
+
+    @Test
+    void backpressureTest() {
+        Tree tree = Tree.getTreeFromString("[0,1]");
+        TreePublisher publisher = new TreePublisher(Runnable::run, 16, OverflowPolicy.BOUNDED_BUFFER);
+        tree.setPublisher(publisher);
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        publisher.subscribe(subscriber);
+        for (int i = 2; i < 7; i++) {
+            tree.addNode(0, i);
+        }
+        assertEquals(2, subscriber.events.size());
+        subscriber.subscription.request(10);
+        assertEquals(5, subscriber.events.size());
+        assertEquals(6, subscriber.events.get(4).getChild());
+        assertNull(subscriber.error);
+    }
+
+    @Test
+    void overflowTest() {
+        // delivery tasks run only when the test says so, i.e. subscribers are slow
+        ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        Tree tree = Tree.getTreeFromString("[0,1]");
+        TreePublisher dropping = new TreePublisher(tasks::add, 3, OverflowPolicy.DROP_AND_RESYNC);
+        tree.setPublisher(dropping);
+        RecordingSubscriber subscriber = new RecordingSubscriber(Long.MAX_VALUE);
+        dropping.subscribe(subscriber);
+        for (int i = 2; i < 10; i++) {
+            tree.addNode(0, i);
+        }
+        tasks.poll().run();
+        assertTrue(tasks.isEmpty());
+        // buffer of 4 events, the rest is dropped
+        assertEquals(5, subscriber.events.size());
+        assertEquals(new TreeEvent(TreeEvent.Type.RESYNC, -1, -1, 7), subscriber.events.get(4));
+        assertThrows(IllegalStateException.class, () -> subscriber.events.get(4).apply(new Tree()));
+
+        // subscriber rebuilds its copy and continues with the newer events
+        Tree mirror = Tree.copyOf(tree);
+        long resyncedAt = tree.getModificationCount();
+        tree.removeNode(9);
+        tasks.poll().run();
+        for (TreeEvent event : subscriber.events.subList(5, subscriber.events.size())) {
+            assertTrue(event.getModificationCount() > resyncedAt);
+            event.apply(mirror);
+        }
+        assertEquals(tree, mirror);
+
+        TreePublisher bounded = new TreePublisher(tasks::add, 2, OverflowPolicy.BOUNDED_BUFFER);
+        tree.setPublisher(bounded);
+        RecordingSubscriber failing = new RecordingSubscriber(Long.MAX_VALUE);
+        bounded.subscribe(failing);
+        for (int i = 10; i < 13; i++) {
+            tree.addNode(0, i);
+        }
+        tasks.poll().run();
+        assertTrue(failing.error instanceof IllegalStateException);
+        assertEquals(0, bounded.getSubscriberCount());
+        assertEquals(12, tree.size());
+    }
+}
@@ -0,0 +1,140 @@
+package test;
+
+import main.java.Tree;
+import main.java.TreeGenerator;
+import main.java.TreeGenerator.Shape;
+import main.java.TreeRenderer;
+import main.java.TreeTransformer;
+import main.java.exceptions.NotALeafException;
+import main.java.exceptions.ParentDoesNotExistException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeRendererTest {
+    /**
+     * Applies diff of the renderer to the lines of the view
+     * */
+    private static void applyDiff(List<String> view, String diff) {
+        for (String change : diff.split("\n")) {
+            int separator = change.indexOf(' ');
+            int line = Integer.parseInt(change.substring(1, separator)) - 1;
+            String text = change.substring(separator + 1);
+            switch (change.charAt(0)) {
+                case '+' -> view.add(line, text);
+                case '-' -> assertEquals(text, view.remove(line));
+                case '~' -> view.set(line, text);
+                default -> fail("Unknown change: " + change);
+            }
+        }
+    }
+
+    private static List<String> lines(Tree tree) {
+        return tree.isEmpty() ? new ArrayList<>() : new ArrayList<>(Arrays.asList(tree.toString().split("\n")));
+    }
+
+    @Test
+    void diffTest() {
+        TreeRenderer renderer = new TreeRenderer(Tree.getTreeFromString("[1,2][1,3][2,4]"));
+        assertEquals("~4    ├──3\n+5    └──5\n", renderer.addNode(1, 5));
+        assertEquals("+5       └──6\n", renderer.addNode(3, 6));
+        assertEquals("-6    └──5\n~4    └──3\n", renderer.removeNode(5));
+        assertEquals("+3       ├──0\n", renderer.addNode(2, 0));
+        assertThrows(NotALeafException.class, () -> renderer.removeNode(2));
+        assertThrows(NotALeafException.class, () -> renderer.removeNode(7));
+        assertThrows(ParentDoesNotExistException.class, () -> renderer.addNode(7, 8));
+        assertEquals(Tree.getTreeFromString("[1,2][1,3][2,4][3,6][2,0]"), renderer.getTree());
+
+        TreeRenderer empty = new TreeRenderer(new Tree());
+        assertEquals("+1 └──1\n+2    └──2\n", empty.addNode(1, 2));
+        empty.removeNode(2);
+        assertEquals("-1 └──1\n", empty.removeNode(1));
+        assertTrue(empty.getTree().isEmpty());
+    }
+
+    @Test
+    void randomDiffTest() {
+        Tree tree = new TreeGenerator(Shape.RANDOM, 300, 1, 5).generateTree();
+        TreeRenderer renderer = new TreeRenderer(tree);
+        List<String> view = lines(tree);
+        Random random = new Random(6);
+        int nextIndex = 300;
+        for (int i = 0; i < 2000; i++) {
+            int node = random.nextInt(nextIndex);
+            if (!tree.containsNode(node)) {
+                continue;
+            }
+            if (random.nextBoolean() && tree.getChildCount(node) == 0 && node != tree.getRootIndex()) {
+                applyDiff(view, renderer.removeNode(node));
+            } else {
+                applyDiff(view, renderer.addNode(node, nextIndex++));
+            }
+            assertEquals(lines(tree), view);
+        }
+    }
+
+    @Test
+    void wideTreeTest() {
+        // lines under wide nodes are ranked by prefix sums, which are updated, dropped and rebuilt on the way
+        Tree tree = new Tree();
+        TreeRenderer renderer = new TreeRenderer(tree);
+        List<String> view = new ArrayList<>();
+        List<Integer> nodes = new ArrayList<>(List.of(0));
+        for (int i = 1; i <= 200; i++) {
+            applyDiff(view, renderer.addNode(0, 2 * i));
+            nodes.add(2 * i);
+        }
+        Random random = new Random(7);
+        int nextIndex = 10000;
+        for (int i = 0; i < 2000; i++) {
+            int node = nodes.get(random.nextInt(nodes.size()));
+            switch (random.nextInt(4)) {
+                case 0 -> {
+                    if (node != 0 && tree.getChildCount(node) == 0) {
+                        applyDiff(view, renderer.removeNode(node));
+                        nodes.remove(Integer.valueOf(node));
+                    }
+                }
+                case 1 -> {
+                    // appended deeper in the tree, prefix sums of the ancestors change
+                    applyDiff(view, renderer.addNode(node, nextIndex));
+                    nodes.add(nextIndex++);
+                }
+                default -> {
+                    // inserted between the children of the root (or appended after them)
+                    int child = 1 + random.nextInt(600);
+                    if (!tree.containsNode(child)) {
+                        applyDiff(view, renderer.addNode(0, child));
+                        nodes.add(child);
+                    }
+                }
+            }
+            assertEquals(lines(tree), view);
+        }
+    }
+
+    @Test
+    void interactiveModeTest() {
+        String commands = "ADD(1, 2)\nADD(1, 3)\nREMOVE(3)\nREMOVE(5)\nexit";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        Tree tree = TreeTransformer.handleInteractiveMode(new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)),
+                new PrintStream(out, true, StandardCharsets.UTF_8), new PrintStream(errors, true, StandardCharsets.UTF_8),
+                new Tree());
+        assertEquals(Tree.getTreeFromString("[1,2]"), tree);
+        String output = out.toString(StandardCharsets.UTF_8);
+        assertTrue(output.contains("+1 └──1\n+2    └──2\n"));
+        assertTrue(output.contains("~2    ├──2\n+3    └──3\n"));
+        assertTrue(output.contains("-3    └──3\n~2    └──2\n"));
+        assertTrue(errors.toString(StandardCharsets.UTF_8).contains("Command execution failed!"));
+    }
+}
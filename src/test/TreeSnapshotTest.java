@@ -0,0 +1,147 @@
+package test;
+
+import main.java.Tree;
+import main.java.TreeGenerator;
+import main.java.TreeGenerator.Shape;
+import main.java.TreeSnapshot;
+import main.java.TreeTransformer;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeSnapshotTest {
+    private static Path createSnapshot(Tree tree) throws IOException {
+        File file = File.createTempFile("snapshot", TreeSnapshot.EXTENSION);
+        file.deleteOnExit();
+        TreeSnapshot.write(tree, file.toPath());
+        return file.toPath();
+    }
+
+    @Test
+    void readTest() throws IOException {
+        Tree tree = Tree.getTreeFromString("[5,3][5,1][3,7][1,9][1,2]");
+        try (TreeSnapshot snapshot = TreeSnapshot.open(createSnapshot(tree))) {
+            assertEquals(6, snapshot.size());
+            assertEquals(5, snapshot.getRootIndex());
+            assertEquals(2, snapshot.getChildCount(5));
+            assertEquals(1, snapshot.getChild(5, 0));
+            assertEquals(3, snapshot.getChild(5, 1));
+            assertEquals(2, snapshot.getChild(1, 0));
+            assertEquals(9, snapshot.getChild(1, 1));
+            assertEquals(0, snapshot.getChildCount(7));
+            assertEquals(3, snapshot.getSubtreeSize(1));
+            assertTrue(snapshot.containsNode(9));
+            assertFalse(snapshot.containsNode(4));
+            assertEquals(Integer.valueOf(1), snapshot.getParent(9));
+            assertNull(snapshot.getParent(5));
+            assertThrows(IllegalArgumentException.class, () -> snapshot.getChildCount(4));
+            assertThrows(IndexOutOfBoundsException.class, () -> snapshot.getChild(3, 1));
+        }
+    }
+
+    @Test
+    void transformationsTest() throws IOException {
+        Tree given = new TreeGenerator(Shape.RANDOM, 5000, 1, 2).generateTree();
+        Tree desired = TreeGenerator.mutate(given, 0.02, 3);
+        Path givenPath = createSnapshot(given), desiredPath = createSnapshot(desired);
+        String expected = TreeTransformer.getTransformations(given, desired);
+        try (TreeSnapshot givenSnapshot = TreeSnapshot.open(givenPath);
+             TreeSnapshot desiredSnapshot = TreeSnapshot.open(desiredPath)) {
+            assertEquals("", TreeTransformer.getTransformations(given, givenSnapshot));
+            assertEquals("", TreeTransformer.getTransformations(givenSnapshot, given));
+            assertEquals(expected, TreeTransformer.getTransformations(givenSnapshot, desiredSnapshot));
+            assertEquals(expected, TreeTransformer.getTransformations(given, desiredSnapshot));
+            assertEquals(desired, Tree.copyOf(desiredSnapshot));
+        }
+        assertEquals(expected, TreeTransformer.getTransformationsFromFiles(givenPath.toString(), desiredPath.toString()));
+        // snapshots are copied into trees to be printed
+        assertEquals(given.toString() + desired + expected,
+                TreeTransformer.getTransformationsFromFiles(givenPath.toString(), desiredPath.toString(), true));
+    }
+
+    @Test
+    void emptyTreeTest() throws IOException {
+        try (TreeSnapshot snapshot = TreeSnapshot.open(createSnapshot(new Tree()))) {
+            assertTrue(snapshot.isEmpty());
+            assertEquals(0, snapshot.size());
+            assertFalse(snapshot.containsNode(0));
+            assertThrows(IllegalStateException.class, snapshot::getRootIndex);
+        }
+    }
+
+    @Test
+    void invalidSnapshotTest() throws IOException {
+        File file = File.createTempFile("snapshot", TreeSnapshot.EXTENSION);
+        file.deleteOnExit();
+        Files.writeString(file.toPath(), "[1,2][1,3]");
+        assertThrows(IllegalArgumentException.class, () -> TreeSnapshot.open(file.toPath()));
+
+        TreeSnapshot snapshot = TreeSnapshot.open(createSnapshot(Tree.getTreeFromString("[1,2]")));
+        snapshot.close();
+        assertThrows(IllegalStateException.class, snapshot::size);
+        assertThrows(IllegalStateException.class, () -> snapshot.containsNode(1));
+        assertDoesNotThrow(snapshot::close);
+    }
+
+    @Test
+    void concurrentReadTest() throws Exception {
+        Tree tree = new TreeGenerator(Shape.RANDOM, 20000, 1, 4).generateTree();
+        try (TreeSnapshot snapshot = TreeSnapshot.open(createSnapshot(tree))) {
+            // threads share the cache of the last looked up node, each of them has to get its own nodes
+            List<Future<?>> readers = new ArrayList<>();
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int thread = 0; thread < 4; thread++) {
+                int seed = thread;
+                readers.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 100000; i++) {
+                        int node = random.nextInt(20000);
+                        assertEquals(tree.getChildCount(node), snapshot.getChildCount(node));
+                        if (tree.getChildCount(node) > 0) {
+                            assertEquals(tree.getChild(node, 0), snapshot.getChild(node, 0));
+                        }
+                    }
+                }));
+            }
+            for (Future<?> reader : readers) {
+                reader.get();
+            }
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void writeFailureTest() throws IOException {
+        Path directory = Files.createTempDirectory("snapshots");
+        // target cannot be replaced (non-empty directory), the temporary file is removed
+        Path target = Files.createDirectory(directory.resolve("tree" + TreeSnapshot.EXTENSION));
+        Files.createFile(target.resolve("child"));
+        assertThrows(IOException.class, () -> TreeSnapshot.write(Tree.getTreeFromString("[1,2]"), target));
+        try (var files = Files.list(directory)) {
+            assertEquals(List.of(target), files.toList());
+        }
+        Files.delete(target.resolve("child"));
+        Files.delete(target);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            // written snapshot gets the default permissions of new files
+            Path created = Files.createFile(directory.resolve("created"));
+            TreeSnapshot.write(Tree.getTreeFromString("[1,2]"), target);
+            assertEquals(Files.getPosixFilePermissions(created), Files.getPosixFilePermissions(target));
+            Files.delete(created);
+            Files.delete(target);
+        }
+        Files.delete(directory);
+    }
+}
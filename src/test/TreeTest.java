@@ -1,13 +1,20 @@
 package test;
 
 import main.java.exceptions.NodeAlreadyExistsException;
+import main.java.exceptions.NodeDoesNotExistException;
 import main.java.exceptions.NotALeafException;
 import main.java.exceptions.ParentDoesNotExistException;
+import main.java.NodeDictionary;
 import main.java.Tree;
+import main.java.TreeFiles;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
 
 import static org.junit.jupiter.api.Assertions.*;
 class TreeTest {
@@ -37,6 +44,20 @@ class TreeTest {
 
     @org.junit.jupiter.api.Test
     void addNode() {
+        Tree t1 = new Tree();
+        t1.addNode(1, 7);
+        t1.addNode(1, 3);
+        t1.addNode(1, 9);
+        t1.addNode(1, 5);
+        assertThrows(NodeAlreadyExistsException.class, () -> t1.addNode(1, 3));
+        assertThrows(ParentDoesNotExistException.class, () -> t1.addNode(2, 4));
+        // children are kept sorted by index
+        assertEquals(4, t1.getChildCount(1));
+        assertEquals(3, t1.getChild(1, 0));
+        assertEquals(5, t1.getChild(1, 1));
+        assertEquals(9, t1.getChild(1, 3));
+        t1.removeNode(5);
+        assertEquals(7, t1.getChild(1, 1));
     }
 
     @org.junit.jupiter.api.Test
@@ -89,6 +110,20 @@ class TreeTest {
         assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromString("[]"));
         assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromString("[1]"));
         assertThrows(NodeAlreadyExistsException.class, () -> Tree.getTreeFromString("[1,2][1,3][3,2]"));
+        // longer cycles
+        assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromString("[1,2][3,4][4,5][5,3]"));
+        // repeated edges are ignored
+        assertEquals(Tree.getTreeFromString("[1,2][2,3]"), Tree.getTreeFromString("[1,2][2,3][1,2]"));
+    }
+
+    @Test
+    void validationReportsAllProblemsTest() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> Tree.getTreeFromString("[1,2][3,4][4,5][5,3][7,8][1,8][9,9]"));
+        assertTrue(e.getMessage().contains("Node 8 has multiple parents"), e.getMessage());
+        assertTrue(e.getMessage().contains("Edge [5, 3] introduces a cycle"), e.getMessage());
+        assertTrue(e.getMessage().contains("Edge [9, 9] introduces a cycle"), e.getMessage());
+        assertTrue(e.getMessage().contains("multiple roots exist! [1, 7]"), e.getMessage());
     }
 
     @Test
@@ -108,4 +143,177 @@ class TreeTest {
         empty.serializeTree("resources/empty.tt");
         assertEquals(empty, Tree.deserializeTree("resources/empty.tt"));
     }
+
+    @Test
+    void saveLoadCompressedTest() throws IOException {
+        Tree t = new Tree();
+        t.addNode(1, 2);
+        t.addNode(1, 5);
+        t.addNode(2, 3);
+        File file = File.createTempFile("sample", Tree.EXTENSION + TreeFiles.GZIP_EXTENSION);
+        file.deleteOnExit();
+        t.serializeTree(file.getPath());
+        // file content has to be gzip compressed
+        try (InputStream in = new FileInputStream(file)) {
+            assertEquals(0x1f, in.read());
+            assertEquals(0x8b, in.read());
+        }
+        assertEquals(t, Tree.deserializeTree(file.getPath()));
+        assertThrows(IllegalArgumentException.class, () -> t.serializeTree("resources/sample.gz"));
+    }
+
+    @Test
+    void labelledTreeTest() throws IOException {
+        NodeDictionary dictionary = new NodeDictionary();
+        Tree t = Tree.getTreeFromString("[root, usr/lib][root, 4294967296][usr/lib, 3f2c-11ee]", dictionary);
+        assertEquals(4, t.size());
+        assertEquals(0, t.getRootIndex());
+        assertEquals("usr/lib", dictionary.decode(1));
+        assertEquals(3, dictionary.getIndex("3f2c-11ee"));
+        assertEquals(-1, dictionary.getIndex("missing"));
+        assertEquals("└──root\n   ├──usr/lib\n      └──3f2c-11ee\n   └──4294967296\n", t.toString(dictionary));
+        assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromString("[a, ][a, b]", new NodeDictionary()));
+        assertThrows(NodeAlreadyExistsException.class, () -> Tree.getTreeFromString("[a, b][c, b][a, c]", new NodeDictionary()));
+
+        // labels are saved with the tree and encoded into another dictionary on load
+        File file = File.createTempFile("labelled", Tree.EXTENSION);
+        file.deleteOnExit();
+        Tree.serializeTree(t, dictionary, file.getPath());
+        NodeDictionary other = new NodeDictionary();
+        other.encode("4294967296");
+        Tree loaded = Tree.deserializeTree(file.getPath(), other);
+        assertEquals("└──root\n   ├──4294967296\n   └──usr/lib\n      └──3f2c-11ee\n", loaded.toString(other));
+        assertEquals(0, loaded.getChild(other.getIndex("root"), 0));
+        // without a dictionary saved indexes are kept
+        assertEquals(t, Tree.deserializeTree(file.getPath()));
+    }
+
+    @Test
+    void getTreeFromReaderTest() {
+        Tree expected = Tree.getTreeFromString("[1, 9][9, 8][1, 6][6, 5][6, 2][1, 7]");
+        assertEquals(expected, Tree.getTreeFromReader(new StringReader("[1, 9][9, 8]\n[1, 6][6,\n 5][6, 2][1, 7]")));
+        assertEquals(new Tree(), Tree.getTreeFromReader(new StringReader("")));
+        assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromReader(new StringReader("[1,2]1,3]")));
+        assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromReader(new StringReader("[1,2][1,3")));
+        assertThrows(IllegalArgumentException.class, () -> Tree.getTreeFromReader(new StringReader("[1,[2]")));
+        assertThrows(NodeAlreadyExistsException.class, () -> Tree.getTreeFromReader(new StringReader("[1,2][1,3][3,2]")));
+    }
+
+    @Test
+    void removeSubtreeTest() {
+        Tree t = Tree.getTreeFromString("[1,2][1,3][3,4][1,5][5,6][5,7][7,8]");
+        t.removeSubtree(5);
+        assertEquals(Tree.getTreeFromString("[1,2][1,3][3,4]"), t);
+        assertEquals(4, t.size());
+        assertNull(t.getNode(8));
+        assertThrows(NodeDoesNotExistException.class, () -> t.removeSubtree(5));
+        // parent became a leaf
+        t.removeSubtree(4);
+        t.removeNode(3);
+        // node indexes are free again
+        t.addNode(2, 8);
+        t.removeSubtree(1);
+        assertEquals(new Tree(), t);
+        assertEquals(0, t.size());
+    }
+
+    @Test
+    void graftSubtreeTest() {
+        Tree t = Tree.getTreeFromString("[1,2][1,3][3,4]");
+        Tree subtree = Tree.getTreeFromString("[5,6][5,7][7,8]");
+        assertThrows(ParentDoesNotExistException.class, () -> t.graftSubtree(9, subtree));
+        assertThrows(NodeAlreadyExistsException.class, () -> t.graftSubtree(4, Tree.getTreeFromString("[5,3]")));
+        t.graftSubtree(4, subtree);
+        assertEquals(Tree.getTreeFromString("[1,2][1,3][3,4][4,5][5,6][5,7][7,8]"), t);
+        assertEquals(new Tree(), subtree);
+        // grafted nodes are leaves/parents of the tree
+        t.removeNode(8);
+        t.removeNode(7);
+        assertThrows(NotALeafException.class, () -> t.removeNode(4));
+        Tree empty = new Tree();
+        empty.graftSubtree(0, t);
+        assertEquals(Tree.getTreeFromString("[0,1][1,2][1,3][3,4][4,5][5,6]"), empty);
+    }
+
+    @Test
+    void subtreeSizeTest() throws IOException {
+        Tree t = Tree.getTreeFromString("[1,2][1,3][3,4][3,5][5,6]");
+        assertEquals(6, t.getSubtreeSize(1));
+        assertEquals(4, t.getSubtreeSize(3));
+        assertEquals(1, t.getSubtreeSize(2));
+        t.addNode(6, 7);
+        assertEquals(7, t.getSubtreeSize(1));
+        assertEquals(3, t.getSubtreeSize(5));
+        t.removeNode(2);
+        assertEquals(6, t.getSubtreeSize(1));
+        t.removeSubtree(5);
+        assertEquals(2, t.getSubtreeSize(3));
+        assertEquals(3, t.getSubtreeSize(1));
+        Tree subtree = Tree.getTreeFromString("[8,9][8,10]");
+        t.graftSubtree(4, subtree);
+        assertEquals(4, t.getSubtreeSize(4));
+        assertEquals(6, t.getSubtreeSize(1));
+        assertEquals(t.size(), t.getSubtreeSize(1));
+        assertThrows(IllegalArgumentException.class, () -> t.getSubtreeSize(5));
+
+        // sizes are computed for deserialized trees as well
+        File file = File.createTempFile("sizes", Tree.EXTENSION);
+        file.deleteOnExit();
+        t.serializeTree(file.getPath());
+        Tree loaded = Tree.deserializeTree(file.getPath());
+        for (int index : new int[]{1, 3, 4, 8, 9}) {
+            assertEquals(t.getSubtreeSize(index), loaded.getSubtreeSize(index));
+        }
+    }
+
+    @Test
+    void subtreeHashTest() throws IOException {
+        Tree t = Tree.getTreeFromString("[1,2][1,3][3,4][3,5][5,6]");
+        Tree same = Tree.getTreeFromString("[3,5][1,3][5,6][1,2][3,4]");
+        assertEquals(t.getSubtreeHash(1), same.getSubtreeHash(1));
+        assertEquals(t.getSubtreeHash(3), same.getSubtreeHash(3));
+        same.addNode(4, 7);
+        assertNotEquals(t.getSubtreeHash(3), same.getSubtreeHash(3));
+        assertEquals(t.getSubtreeHash(5), same.getSubtreeHash(5));
+        same.removeNode(7);
+        assertEquals(t.getSubtreeHash(1), same.getSubtreeHash(1));
+
+        // hashes are maintained by subtree operations and match the ones of built trees
+        t.removeSubtree(5);
+        t.graftSubtree(4, Tree.getTreeFromString("[8,9][8,10]"));
+        Tree expected = Tree.getTreeFromString("[1,2][1,3][3,4][4,8][8,9][8,10]");
+        for (int index : new int[]{1, 3, 4, 8, 9}) {
+            assertEquals(expected.getSubtreeHash(index), t.getSubtreeHash(index));
+        }
+        // same nodes under a different parent are a different subtree
+        assertNotEquals(expected.getSubtreeHash(8), Tree.getTreeFromString("[2,8][8,9][8,10]").getSubtreeHash(8));
+
+        File file = File.createTempFile("hashes", Tree.EXTENSION);
+        file.deleteOnExit();
+        t.serializeTree(file.getPath());
+        assertEquals(t.getSubtreeHash(1), Tree.deserializeTree(file.getPath()).getSubtreeHash(1));
+        assertEquals(t.getSubtreeHash(1), Tree.copyOf(t).getSubtreeHash(1));
+    }
+
+    @Test
+    void serializePermissionsTest() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Path directory = Files.createTempDirectory("permissions");
+        Tree tree = Tree.getTreeFromString("[1,2][1,3]");
+        // a new file gets the default permissions of new files (not the owner-only ones of temporary files)
+        Path created = Files.createFile(directory.resolve("created"));
+        Path saved = directory.resolve("saved.tt");
+        tree.serializeTree(saved.toString());
+        assertEquals(Files.getPosixFilePermissions(created), Files.getPosixFilePermissions(saved));
+        // an existing file keeps its permissions
+        Files.setPosixFilePermissions(saved, PosixFilePermissions.fromString("rw-r-----"));
+        tree.serializeTree(saved.toString());
+        assertEquals(PosixFilePermissions.fromString("rw-r-----"), Files.getPosixFilePermissions(saved));
+        assertEquals(tree, Tree.deserializeTree(saved.toString()));
+        Files.delete(saved);
+        Files.delete(created);
+        Files.delete(directory);
+    }
 }
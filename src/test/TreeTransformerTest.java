@@ -1,7 +1,14 @@
 package test;
 
+import main.java.CancellationToken;
+import main.java.NodeDictionary;
+import main.java.TransformationEstimate;
 import main.java.Tree;
+import main.java.TreeFiles;
+import main.java.TreeGenerator;
+import main.java.TreeSnapshot;
 import main.java.TreeTransformer;
+import main.java.exceptions.OperationCancelledException;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
@@ -78,4 +85,326 @@ class TreeTransformerTest {
         Tree rebuiltTree = handleInteractiveMode(in, out, err, tree1);
         assertEquals(rebuiltTree, tree2);
     }
-}
\ No newline at end of file
+
+    @Test
+    void getTreeFromCompressedFileTest() throws IOException {
+        File file = File.createTempFile("one", ".txt" + TreeFiles.GZIP_EXTENSION);
+        file.deleteOnExit();
+        try (Writer writer = TreeFiles.newWriter(file.getPath())) {
+            writer.write("[1, 2][2, 3]\n[1, 4][4, 5][4, 6]");
+        }
+        assertEquals(getTreeFromFile(one), getTreeFromFile(file.getPath()));
+    }
+
+    @Test
+    void getTransformationsDeterministicTest() throws IOException {
+        Tree tree1 = getTreeFromFile("resources/test_tree_1.txt");
+        Tree tree2 = getTreeFromFile("resources/test_tree_2.txt");
+        // children are matched in ascending order of indexes
+        assertEquals("Remove(6), Remove(8), Remove(7), Remove(5), Remove(9), Remove(15), " +
+                "Add(1, 6), Add(6, 5), Add(5, 7), Add(7, 9), Add(10, 12)",
+                TreeTransformer.getTransformations(tree1, tree2));
+    }
+
+    @Test
+    void getTransformationsFromFilesTest() throws IOException {
+        String expected = TreeTransformer.getTransformations(getTreeFromFile(one), getTreeFromFile(two));
+        assertEquals(expected, TreeTransformer.getTransformationsFromFiles(one, two));
+        String rendered = TreeTransformer.getTransformationsFromFiles(one, two, true);
+        assertEquals(getTreeFromFile(one).toString() + getTreeFromFile(two) + expected, rendered);
+        assertThrows(IOException.class, () -> TreeTransformer.getTransformationsFromFiles(one, "resources/missing.txt"));
+        assertThrows(IOException.class, () -> TreeTransformer.getTransformationsFromFiles("resources/missing.txt", two));
+        // the other tree is opened concurrently, the failure waits for it (its snapshot is closed)
+        File snapshot = File.createTempFile("desired", TreeSnapshot.EXTENSION);
+        TreeSnapshot.write(getTreeFromFile(two), snapshot.toPath());
+        assertThrows(IOException.class,
+                () -> TreeTransformer.getTransformationsFromFiles("resources/missing.txt", snapshot.getPath()));
+        snapshot.delete();
+    }
+
+    @Test
+    void estimateTransformationsTest() throws IOException {
+        Tree tree1 = getTreeFromFile(one);
+        Tree tree2 = getTreeFromFile(two);
+        String transformations = TreeTransformer.getTransformations(tree1, tree2);
+        TransformationEstimate estimate = TreeTransformer.estimateTransformations(tree1, tree2);
+        assertEquals(transformations.split("Remove").length - 1, estimate.getRemoveCount());
+        assertEquals(transformations.split("Add").length - 1, estimate.getAddCount());
+        assertEquals(new TransformationEstimate(0, 0), TreeTransformer.estimateTransformations(tree1, tree1));
+        assertEquals(new TransformationEstimate(tree1.size(), 0), TreeTransformer.estimateTransformations(tree1, null));
+        assertEquals(new TransformationEstimate(0, tree2.size() - 1), TreeTransformer.estimateTransformations(new Tree(), tree2));
+        Tree given = getWideTree(50000, 0);
+        Tree desired = getWideTree(50000, 0);
+        desired.removeSubtree(2);
+        desired.graftSubtree(1, Tree.getTreeFromString("[100000,100001][100000,100002][100001,100003]"));
+        assertEquals(TreeTransformer.getTransformations(given, desired).split("\\), ").length,
+                TreeTransformer.estimateTransformations(given, desired).getTotalCount());
+    }
+
+    @Test
+    void getTransformationsWithLabelsTest() throws IOException {
+        NodeDictionary dictionary = new NodeDictionary();
+        Tree given = Tree.getTreeFromString("[/, /usr][/usr, /usr/lib][/, /tmp]", dictionary);
+        Tree desired = Tree.getTreeFromString("[/, /usr][/usr, /usr/bin][/usr/bin, 9007199254740993]", dictionary);
+        assertEquals("Remove(/tmp), Remove(/usr/lib), Add(/usr, /usr/bin), Add(/usr/bin, 9007199254740993)",
+                TreeTransformer.getTransformations(given, desired, dictionary));
+
+        File file1 = File.createTempFile("labelled_1", ".txt");
+        File file2 = File.createTempFile("labelled_2", ".txt");
+        file1.deleteOnExit();
+        file2.deleteOnExit();
+        try (Writer writer = new FileWriter(file1)) {
+            writer.write("[a, b][b, c]");
+        }
+        try (Writer writer = new FileWriter(file2)) {
+            writer.write("[a, c][c, b]");
+        }
+        assertEquals("Remove(c), Remove(b), Add(a, c), Add(c, b)",
+                TreeTransformer.getTransformationsFromFiles(file1.getPath(), file2.getPath(), false, new NodeDictionary()));
+    }
+
+    /**
+     * Returns a wide tree of the given size, node i is a child of node i / 4
+     * */
+    private static Tree getWideTree(int size, int offset) {
+        Tree tree = new Tree();
+        for (int i = 1; i < size; i++) {
+            tree.addNode(i / 4 == 0 ? 0 : i / 4 + offset, i + offset);
+        }
+        return tree;
+    }
+
+    @Test
+    void getTransformationsCancellationTest() throws IOException {
+        Tree given = getWideTree(50000, 0);
+        Tree desired = getWideTree(50000, 100000);
+        long[] reported = new long[2];
+        CancellationToken.ProgressListener listener = (done, total) -> {
+            assertTrue(done >= reported[0] && done <= total);
+            reported[0] = done;
+            reported[1] = total;
+        };
+        String transformations = TreeTransformer.getTransformations(given, desired, null, new CancellationToken(null, listener));
+        assertEquals(TreeTransformer.getTransformations(given, desired), transformations);
+        assertEquals(100000, reported[0]);
+        assertEquals(100000, reported[1]);
+
+        CancellationToken token = new CancellationToken();
+        token.cancel();
+        OperationCancelledException cancelled = assertThrows(OperationCancelledException.class,
+                () -> TreeTransformer.getTransformations(given, desired, null, token));
+        assertEquals(0, cancelled.getDone());
+        assertEquals("", cancelled.getPartialResult());
+
+        // cancelled in the middle of the computation
+        CancellationToken[] stopping = new CancellationToken[1];
+        stopping[0] = new CancellationToken(null, (done, total) -> {
+            if (done > 0) {
+                stopping[0].cancel();
+            }
+        });
+        OperationCancelledException e = assertThrows(OperationCancelledException.class,
+                () -> TreeTransformer.getTransformations(given, desired, null, stopping[0]));
+        assertEquals(CancellationToken.CHECK_INTERVAL, e.getDone());
+        assertEquals(100000, e.getTotal());
+        // partial result is a valid prefix of instructions
+        Tree partial = getWideTree(50000, 0);
+        for (String instruction : e.getPartialResult().split("(?<=\\)), ")) {
+            String[] arguments = instruction.replaceAll("[^0-9,]", "").split(",");
+            if (instruction.startsWith("Remove")) {
+                partial.removeNode(Integer.parseInt(arguments[0]));
+            } else {
+                partial.addNode(Integer.parseInt(arguments[0]), Integer.parseInt(arguments[1]));
+            }
+        }
+        assertTrue(TreeTransformer.getTransformations(given, desired).startsWith(e.getPartialResult()));
+
+        // buffered additions are not a part of the prefix, Add(1, 5) has to wait for Remove(5)
+        Tree movedGiven = Tree.getTreeFromString("[0,1][0,2][2,5]");
+        Tree movedDesired = Tree.getTreeFromString("[0,1][0,2][1,5]");
+        for (int i = 10; i < 5010; i++) {
+            movedGiven.addNode(1, i);
+            movedDesired.addNode(1, i);
+        }
+        CancellationToken[] late = new CancellationToken[1];
+        late[0] = new CancellationToken(null, (done, total) -> {
+            if (done >= 1000) {
+                late[0].cancel();
+            }
+        });
+        OperationCancelledException moved = assertThrows(OperationCancelledException.class,
+                () -> TreeTransformer.getTransformations(movedGiven, movedDesired, null, late[0]));
+        assertTrue(TreeTransformer.getTransformations(movedGiven, movedDesired).startsWith(moved.getPartialResult()));
+        assertDoesNotThrow(() -> TreeTransformer.applyTransformations(Tree.copyOf(movedGiven), moved.getPartialResult()));
+
+        assertThrows(OperationCancelledException.class, () -> TreeTransformer.getTransformations(given, desired, null,
+                new CancellationToken(java.time.Duration.ZERO)));
+        File file = File.createTempFile("cancelled", Tree.EXTENSION);
+        file.deleteOnExit();
+        // existing file is left untouched if serialization does not start or is stopped
+        assertThrows(OperationCancelledException.class, () -> Tree.serializeTree(given, null, file.getPath(), token));
+        assertTrue(file.exists());
+        CancellationToken[] writing = new CancellationToken[1];
+        writing[0] = new CancellationToken(null, (done, total) -> {
+            if (done > 0) {
+                writing[0].cancel();
+            }
+        });
+        Tree.serializeTree(desired, null, file.getPath(), null);
+        assertThrows(OperationCancelledException.class, () -> Tree.serializeTree(given, null, file.getPath(), writing[0]));
+        // previously saved tree survives a cancelled save, no temporary files are left
+        assertEquals(desired, Tree.deserializeTree(file.getPath()));
+        assertEquals(0, file.getParentFile().list((dir, name) -> name.startsWith(file.getName() + ".")).length);
+        Tree.serializeTree(given, null, file.getPath(), new CancellationToken(java.time.Duration.ofMinutes(1)));
+        assertEquals(given, Tree.deserializeTree(file.getPath()));
+        assertThrows(OperationCancelledException.class, () -> TreeTransformer.getTreeFromFile(one, null, token));
+        StringBuilder edges = new StringBuilder();
+        for (int i = 1; i < 10000; i++) {
+            edges.append("[").append(i / 4).append(",").append(i).append("]");
+        }
+        assertThrows(OperationCancelledException.class,
+                () -> Tree.getTreeFromReader(new StringReader(edges.toString()), null, token));
+        assertEquals(getWideTree(10000, 0), Tree.getTreeFromReader(new StringReader(edges.toString()), null,
+                new CancellationToken()));
+    }
+
+    /**
+     * Builds the tree from an array of parents (-1 for the root, -2 if node is not present)
+     * */
+    private static Tree buildTree(int[] parents) {
+        Tree tree = new Tree();
+        int root = -1;
+        for (int node = 0; node < parents.length; node++) {
+            if (parents[node] == -1) {
+                root = node;
+            }
+        }
+        if (root == -1) {
+            return tree;
+        }
+        // lone root can only be obtained by removing its last child
+        tree.addNode(root, parents.length);
+        java.util.ArrayDeque<Integer> queue = new java.util.ArrayDeque<>(java.util.List.of(root));
+        while (!queue.isEmpty()) {
+            int parent = queue.poll();
+            for (int node = 0; node < parents.length; node++) {
+                if (parents[node] == parent) {
+                    tree.addNode(parent, node);
+                    queue.add(node);
+                }
+            }
+        }
+        tree.removeNode(parents.length);
+        return tree;
+    }
+
+    @Test
+    void getTransformationsIsMinimalTest() {
+        // shortest instruction sequences between all trees over nodes 0..3 found by exhaustive search
+        int n = 4;
+        java.util.Map<String, int[]> states = new java.util.LinkedHashMap<>();
+        java.util.Map<String, java.util.List<String>> neighbours = new java.util.HashMap<>();
+        java.util.ArrayDeque<int[]> queue = new java.util.ArrayDeque<>();
+        int[] empty = new int[n];
+        java.util.Arrays.fill(empty, -2);
+        states.put(java.util.Arrays.toString(empty), empty);
+        queue.add(empty);
+        while (!queue.isEmpty()) {
+            int[] state = queue.poll();
+            boolean isEmpty = java.util.Arrays.stream(state).allMatch(p -> p == -2);
+            java.util.List<int[]> next = new java.util.ArrayList<>();
+            for (int node = 0; node < n; node++) {
+                final int index = node;
+                if (state[node] == -2) {
+                    for (int parent = 0; parent < n; parent++) {
+                        if (parent == node) {
+                            continue;
+                        }
+                        if (isEmpty) {
+                            // Add(parent, node) on an empty tree creates the root as well
+                            int[] t = state.clone();
+                            t[parent] = -1;
+                            t[node] = parent;
+                            next.add(t);
+                        } else if (state[parent] != -2) {
+                            int[] t = state.clone();
+                            t[node] = parent;
+                            next.add(t);
+                        }
+                    }
+                } else if (java.util.Arrays.stream(state).noneMatch(p -> p == index)) {
+                    int[] t = state.clone();
+                    t[node] = -2;
+                    next.add(t);
+                }
+            }
+            java.util.List<String> keys = new java.util.ArrayList<>();
+            for (int[] t : next) {
+                String key = java.util.Arrays.toString(t);
+                keys.add(key);
+                if (states.putIfAbsent(key, t) == null) {
+                    queue.add(t);
+                }
+            }
+            neighbours.put(java.util.Arrays.toString(state), keys);
+        }
+
+        for (String from : states.keySet()) {
+            java.util.Map<String, Integer> distances = new java.util.HashMap<>(java.util.Map.of(from, 0));
+            java.util.ArrayDeque<String> bfs = new java.util.ArrayDeque<>(java.util.List.of(from));
+            while (!bfs.isEmpty()) {
+                String current = bfs.poll();
+                for (String next : neighbours.get(current)) {
+                    if (distances.putIfAbsent(next, distances.get(current) + 1) == null) {
+                        bfs.add(next);
+                    }
+                }
+            }
+            Tree given = buildTree(states.get(from));
+            for (String to : states.keySet()) {
+                Tree desired = buildTree(states.get(to));
+                if (desired.size() == 1) {
+                    // lone root cannot be described by Add instructions
+                    continue;
+                }
+                String transformations = TreeTransformer.getTransformations(given, desired);
+                int length = transformations.isEmpty() ? 0 : transformations.split("(?<=\\)), ").length;
+                assertEquals((int) distances.get(to), length, from + " -> " + to);
+                assertEquals(length, TreeTransformer.estimateTransformations(given, desired).getTotalCount());
+            }
+        }
+    }
+
+    @Test
+    void getCompactTransformationsTest() throws IOException {
+        Tree given = Tree.getTreeFromString("[1,2][1,3][2,4][2,5][3,6][6,7]");
+        Tree desired = Tree.getTreeFromString("[1,3][1,8][8,9][8,10][10,11][3,12]");
+        assertEquals("RemoveSubtree(2), RemoveSubtree(6), AddSubtree(1, 8;8:9,10;10:11), Add(3, 12)",
+                TreeTransformer.getCompactTransformations(given, desired));
+        TreeTransformer.applyTransformations(given, TreeTransformer.getCompactTransformations(given, desired));
+        assertEquals(desired, given);
+
+        // different roots, tree is rebuilt
+        Tree other = Tree.getTreeFromString("[0,1][0,2][1,3]");
+        assertEquals("RemoveSubtree(1), AddSubtree(0, 1;1:3), Add(0, 2)",
+                TreeTransformer.getCompactTransformations(desired, other));
+        TreeTransformer.applyTransformations(given, TreeTransformer.getCompactTransformations(desired, other));
+        assertEquals(other, given);
+
+        // compact and plain instructions lead to the same tree, compact ones are much shorter
+        Tree big = new TreeGenerator(TreeGenerator.Shape.RANDOM, 20000, 1, 8).generateTree();
+        Tree mutated = TreeGenerator.mutate(big, 0.05, 9);
+        String compact = TreeTransformer.getCompactTransformations(big, mutated);
+        String plain = TreeTransformer.getTransformations(big, mutated);
+        assertTrue(compact.length() < plain.length());
+        Tree compactResult = Tree.copyOf(big), plainResult = Tree.copyOf(big);
+        TreeTransformer.applyTransformations(compactResult, compact);
+        TreeTransformer.applyTransformations(plainResult, plain);
+        assertEquals(mutated, compactResult);
+        assertEquals(mutated, plainResult);
+        assertEquals("", TreeTransformer.getCompactTransformations(big, big));
+
+        assertThrows(IllegalArgumentException.class, () -> TreeTransformer.applyTransformations(new Tree(), "Move(1, 2)"));
+        assertThrows(NumberFormatException.class, () -> TreeTransformer.applyTransformations(new Tree(), "Add(1, x)"));
+    }
+}